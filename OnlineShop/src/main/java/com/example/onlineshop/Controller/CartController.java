@@ -1,8 +1,7 @@
 package com.example.onlineshop.Controller;
 
-import com.example.onlineshop.Entity.Order;
-import com.example.onlineshop.Util.OrderMapper;
 import com.example.onlineshop.dto.CartItemRequestDto;
+import com.example.onlineshop.dto.CartOperationsRequestDto;
 import com.example.onlineshop.dto.CartResponseDto;
 import com.example.onlineshop.Service.CartService;
 import com.example.onlineshop.dto.OrderResponseDto;
@@ -25,7 +24,6 @@ import org.springframework.web.bind.annotation.*;
 public class CartController {
 
     private final CartService cartService;
-    private final OrderMapper orderMapper;
 
     @GetMapping("/{customerId}")
     @Operation(
@@ -81,6 +79,25 @@ public class CartController {
         return ResponseEntity.ok(cartService.updateItem(customerId, productId, quantity));
     }
 
+    @PatchMapping("/{customerId}/items")
+    @Operation(
+            summary = "Apply several cart changes at once",
+            description = "Applies an ordered list of ADD, SET and REMOVE operations in one transaction. "
+                    + "Either every operation is applied or, if any is invalid or names an unknown product, none is.",
+            responses = {
+                    @ApiResponse(responseCode = "200", description = "Cart updated successfully",
+                            content = @Content(schema = @Schema(implementation = CartResponseDto.class))),
+                    @ApiResponse(responseCode = "400", description = "Invalid operation, unknown product or too many operations"),
+                    @ApiResponse(responseCode = "404", description = "Customer not found")
+            }
+    )
+    public ResponseEntity<CartResponseDto> applyOperations(
+            @Parameter(description = "ID of the customer", required = true)
+            @PathVariable Long customerId,
+            @Valid @RequestBody CartOperationsRequestDto request) {
+        return ResponseEntity.ok(cartService.applyOperations(customerId, request.getOperations()));
+    }
+
     @DeleteMapping("/{customerId}/items/{productId}")
     @Operation(
             summary = "Remove item from cart",
@@ -108,14 +125,15 @@ public class CartController {
             @ApiResponse(responseCode = "200", description = "Checkout successful",
                     content = @Content(mediaType = "application/json",
                             schema = @Schema(implementation = OrderResponseDto.class))),
-            @ApiResponse(responseCode = "400", description = "Cart is empty or invalid"),
+            @ApiResponse(responseCode = "400", description = "Cart is empty or invalid, or an Idempotency-Key reused for another cart"),
             @ApiResponse(responseCode = "404", description = "Cart not found")
     })
     public ResponseEntity<OrderResponseDto> checkout(
             @Parameter(description = "ID of the cart to checkout", example = "1")
-            @PathVariable Long cartId) {
+            @PathVariable Long cartId,
+            @Parameter(description = "Client chosen key; a retry with the same key returns the first order")
+            @RequestHeader(name = "Idempotency-Key", required = false) String idempotencyKey) {
         System.out.println(">>> Checkout called for cartId = " + cartId);
-        Order order = cartService.checkout(cartId);
-        return ResponseEntity.ok(orderMapper.toResponse(order));
+        return ResponseEntity.ok(cartService.checkout(cartId, idempotencyKey));
     }
 }
\ No newline at end of file
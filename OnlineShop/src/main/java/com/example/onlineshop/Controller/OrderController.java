@@ -4,9 +4,14 @@ package com.example.onlineshop.Controller;
 import com.example.onlineshop.Entity.Order;
 import com.example.onlineshop.Entity.OrderStatus;
 import com.example.onlineshop.Repository.OrderRepository;
+import com.example.onlineshop.Util.ConditionalRequests;
 import com.example.onlineshop.Util.OrderMapper;
+import com.example.onlineshop.dto.OrderPageResponseDto;
 import com.example.onlineshop.dto.OrderRequestDto;
 import com.example.onlineshop.dto.OrderResponseDto;
+import com.example.onlineshop.dto.OrderSearchCriteria;
+import com.example.onlineshop.Service.OrderHistoryService;
+import com.example.onlineshop.Service.OrderSearchService;
 import com.example.onlineshop.Service.OrderService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -17,10 +22,14 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @RestController
@@ -30,6 +39,9 @@ import java.util.List;
 public class OrderController {
 
     private final OrderService orderService;
+    private final OrderHistoryService orderHistoryService;
+    private final OrderSearchService orderSearchService;
+
     @PreAuthorize("hasRole('ADMIN')")
     @PostMapping
     @Operation(
@@ -43,7 +55,7 @@ public class OrderController {
                     ),
                     @ApiResponse(
                             responseCode = "400",
-                            description = "Invalid request data",
+                            description = "Invalid request data, or an Idempotency-Key reused for a different request",
                             content = @Content
                     ),
                     @ApiResponse(
@@ -54,9 +66,50 @@ public class OrderController {
             }
     )
     public ResponseEntity<OrderResponseDto> createOrder(
-            @Valid @RequestBody OrderRequestDto request
+            @Valid @RequestBody OrderRequestDto request,
+            @Parameter(description = "Client chosen key; a retry with the same key returns the first response")
+            @RequestHeader(name = "Idempotency-Key", required = false) String idempotencyKey
     ) {
-        return ResponseEntity.ok(orderService.createOrder(request));
+        return ResponseEntity.ok(orderService.createOrder(request, idempotencyKey));
+    }
+
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping("/search")
+    @Operation(
+            summary = "Search orders",
+            description = "Returns one page of the orders matching every given filter, newest first. Pass the " +
+                    "nextCursor of a page as cursor, with the same filters, to get the next one",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "One page of matching orders",
+                            content = @Content(schema = @Schema(implementation = OrderPageResponseDto.class))
+                    ),
+                    @ApiResponse(responseCode = "400", description = "Invalid filter or cursor")
+            }
+    )
+    public ResponseEntity<OrderPageResponseDto> searchOrders(
+            @Parameter(description = "Order status") @RequestParam(required = false) OrderStatus status,
+            @Parameter(description = "Customer ID") @RequestParam(required = false) Long customerId,
+            @Parameter(description = "Created at or after, ISO date-time", example = "2024-01-01T00:00:00")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @Parameter(description = "Created before, ISO date-time", example = "2024-02-01T00:00:00")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @Parameter(description = "Minimum total amount", example = "100.00")
+            @RequestParam(required = false) BigDecimal minTotal,
+            @Parameter(description = "Continuation token returned by the previous page")
+            @RequestParam(required = false) String cursor,
+            @Parameter(description = "Page size, capped by order.page.max-size", example = "20")
+            @RequestParam(required = false) Integer size
+    ) {
+        OrderSearchCriteria criteria = OrderSearchCriteria.builder()
+                .status(status)
+                .customerId(customerId)
+                .from(from)
+                .to(to)
+                .minTotal(minTotal)
+                .build();
+        return ResponseEntity.ok(orderSearchService.search(criteria, cursor, size));
     }
 
     @GetMapping("/{id}")
@@ -69,32 +122,43 @@ public class OrderController {
                             description = "Order found",
                             content = @Content(schema = @Schema(implementation = OrderResponseDto.class))
                     ),
+                    @ApiResponse(responseCode = "304", description = "Order unchanged since the given ETag"),
                     @ApiResponse(responseCode = "404", description = "Order not found")
             }
     )
     public ResponseEntity<OrderResponseDto> getOrderById(
-            @Parameter(description = "ID of the order to fetch") @PathVariable Long id
+            @Parameter(description = "ID of the order to fetch") @PathVariable Long id,
+            WebRequest webRequest
     ) {
-        return ResponseEntity.ok(orderService.getOrderById(id));
+        OrderResponseDto order = orderService.getOrderById(id);
+        if (ConditionalRequests.notModified(webRequest, order.getVersion(), order.getUpdatedAt())) {
+            return null;
+        }
+        return ResponseEntity.ok(order);
     }
 
     @GetMapping("/customer/{customerId}")
     @Operation(
-            summary = "Get all orders for a customer",
-            description = "Returns a list of all orders placed by a given customer",
+            summary = "Get a customer's orders",
+            description = "Returns one page of a customer's orders, newest first. Pass the nextCursor of a page " +
+                    "as cursor to get the next one",
             responses = {
                     @ApiResponse(
                             responseCode = "200",
-                            description = "Orders found",
-                            content = @Content(schema = @Schema(implementation = OrderResponseDto.class))
+                            description = "One page of orders",
+                            content = @Content(schema = @Schema(implementation = OrderPageResponseDto.class))
                     ),
-                    @ApiResponse(responseCode = "404", description = "Customer not found")
+                    @ApiResponse(responseCode = "400", description = "Invalid cursor")
             }
     )
-    public ResponseEntity<List<OrderResponseDto>> getOrdersByCustomer(
-            @Parameter(description = "Customer ID") @PathVariable Long customerId
+    public ResponseEntity<OrderPageResponseDto> getOrdersByCustomer(
+            @Parameter(description = "Customer ID") @PathVariable Long customerId,
+            @Parameter(description = "Continuation token returned by the previous page")
+            @RequestParam(required = false) String cursor,
+            @Parameter(description = "Page size, capped by order.page.max-size", example = "20")
+            @RequestParam(required = false) Integer size
     ) {
-        return ResponseEntity.ok(orderService.getOrdersByCustomer(customerId));
+        return ResponseEntity.ok(orderHistoryService.getOrderPage(customerId, cursor, size));
     }
     @PreAuthorize("hasRole('ADMIN')")
     @PatchMapping("/{id}/status")
@@ -1,20 +1,46 @@
 package com.example.onlineshop.Controller;
 
 
+import com.example.onlineshop.Service.CatalogVersion;
+import com.example.onlineshop.Service.ProductAutocompleteService;
+import com.example.onlineshop.Service.ProductFacetService;
+import com.example.onlineshop.Service.ProductImportService;
+import com.example.onlineshop.Service.ProductImportService.ImportFormat;
+import com.example.onlineshop.Service.ProductResponseCache;
+import com.example.onlineshop.Service.ProductSearchService;
 import com.example.onlineshop.Service.ProductService;
+import com.example.onlineshop.Util.ConditionalRequests;
+import com.example.onlineshop.Util.ProductCursor.ProductSort;
+import com.example.onlineshop.dto.BulkImportResultDto;
+import com.example.onlineshop.dto.ProductBatchRequestDto;
+import com.example.onlineshop.dto.ProductBatchResponseDto;
+import com.example.onlineshop.dto.ProductFacetsResponseDto;
+import com.example.onlineshop.dto.ProductPageResponseDto;
 import com.example.onlineshop.dto.ProductRequestDto;
 import com.example.onlineshop.dto.ProductResponseDto;
+import com.example.onlineshop.dto.ProductSuggestionDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.ExampleObject;
+import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
 
 @RestController
@@ -23,9 +49,26 @@ import java.util.List;
 
 public class ProductController {
     private final ProductService service;
+    private final ProductSearchService searchService;
+    private final ProductAutocompleteService autocompleteService;
+    private final ProductFacetService facetService;
+    private final ProductImportService importService;
+    private final CatalogVersion catalogVersion;
+    private final ProductResponseCache responseCache;
+    private final ObjectMapper objectMapper;
 
-    public ProductController(ProductService service){
+    public ProductController(ProductService service, ProductSearchService searchService,
+                             ProductAutocompleteService autocompleteService, ProductFacetService facetService,
+                             ProductImportService importService, CatalogVersion catalogVersion,
+                             ProductResponseCache responseCache, ObjectMapper objectMapper){
         this.service=service;
+        this.searchService=searchService;
+        this.autocompleteService=autocompleteService;
+        this.facetService=facetService;
+        this.importService=importService;
+        this.catalogVersion=catalogVersion;
+        this.responseCache=responseCache;
+        this.objectMapper=objectMapper;
     }
     @Operation(
             summary = "Create a new product",
@@ -54,14 +97,146 @@ public class ProductController {
         return ResponseEntity.status(HttpStatus.CREATED).body(created);
     }
 
-    @GetMapping
-    public ResponseEntity<List<ProductResponseDto>> getAll(){
-        return ResponseEntity.ok(service.getAllProducts());
+    @Operation(
+            summary = "Bulk import products",
+            description = "Streams products from an NDJSON body (one product object per line) or a CSV body with a " +
+                    "header line (name,price,description,stockQuantity,category). Rows are validated like " +
+                    "POST /api/products and inserted in batches; invalid rows are reported and skipped"
+    )
+    @ApiResponse(responseCode = "200", description = "Import finished, see imported, failed and errors")
+    @ApiResponse(responseCode = "400", description = "Missing or unusable CSV header")
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping(value = "/bulk", consumes = {"application/x-ndjson", "text/csv"})
+    public ResponseEntity<BulkImportResultDto> bulkImport(
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+            InputStream body){
+        ImportFormat format = contentType.isCompatibleWith(MediaType.parseMediaType("text/csv"))
+                ? ImportFormat.CSV
+                : ImportFormat.NDJSON;
+        return ResponseEntity.ok(importService.importProducts(body, format));
+    }
+
+    @Operation(
+            summary = "List products",
+            description = "Returns one page of the catalog. Pass the nextCursor of a page as cursor to get the next one. " +
+                    "sort=ID orders by id, sort=CATEGORY orders by category, price and id. " +
+                    "Answers 304 when If-None-Match carries the current catalog ETag"
+    )
+    @ApiResponse(responseCode = "200", description = "One page of products",
+            content = @Content(schema = @Schema(implementation = ProductPageResponseDto.class)))
+    @ApiResponse(responseCode = "304", description = "The catalog has not changed since the given ETag")
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<byte[]> getAll(
+            @Parameter(description = "Continuation token returned by the previous page")
+            @RequestParam(required = false) String cursor,
+            @Parameter(description = "Page size, capped by product.page.max-size", example = "20")
+            @RequestParam(required = false) Integer size,
+            @RequestParam(defaultValue = "ID") ProductSort sort,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            WebRequest webRequest){
+        // read the version before the page so a concurrent write can only make the tag older than the body
+        String etag = catalogVersion.etag();
+        if (webRequest.checkNotModified(etag, catalogVersion.lastModified())) {
+            return null;
+        }
+        String key = ProductResponseCache.PAGE_PREFIX + sort + ":" + size + ":" + cursor;
+        return json(responseCache.get(key, etag, () -> service.getProductPage(cursor, size, sort)), acceptEncoding);
+    }
+
+    @Operation(
+            summary = "Get several products by id",
+            description = "Resolves up to product.batch.max-size ids in one call. Products come back in the " +
+                    "requested order; ids with no product are listed under missing"
+    )
+    @ApiResponse(responseCode = "400", description = "Too many ids")
+    @GetMapping(params = "ids")
+    public ResponseEntity<ProductBatchResponseDto> getByIds(
+            @Parameter(description = "Comma separated product ids", example = "1,2,3")
+            @RequestParam List<Long> ids){
+        return ResponseEntity.ok(service.getProductsByIds(ids));
+    }
+
+    @Operation(
+            summary = "Get several products by id",
+            description = "Same as GET /api/products?ids=..., for id lists too long for a query string"
+    )
+    @ApiResponse(responseCode = "400", description = "No ids, a null id or too many ids")
+    @PostMapping("/batch")
+    public ResponseEntity<ProductBatchResponseDto> getBatch(@Valid @RequestBody ProductBatchRequestDto request){
+        return ResponseEntity.ok(service.getProductsByIds(request.getIds()));
+    }
+
+    @Operation(
+            summary = "Stream all products",
+            description = "Writes the whole catalog as newline-delimited JSON, one product per line"
+    )
+    @GetMapping(value = "/stream", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> stream(){
+        StreamingResponseBody body = out -> {
+            ObjectWriter writer = objectMapper.writer();
+            service.streamProducts(product -> {
+                try {
+                    out.write(writer.writeValueAsBytes(product));
+                    out.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            out.flush();
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(body);
     }
 
-    @GetMapping("/{id}")
-    public ResponseEntity<ProductResponseDto> getById(@PathVariable Long id){
-        return ResponseEntity.ok(service.getProductById(id));
+    @Operation(
+            summary = "Search products",
+            description = "Full-text search over name, description and category, best matches first"
+    )
+    @GetMapping("/search")
+    public ResponseEntity<List<ProductResponseDto>> search(
+            @Parameter(description = "Search terms", example = "gaming laptop")
+            @RequestParam String q,
+            @RequestParam(required = false) Integer limit){
+        return ResponseEntity.ok(searchService.search(q, limit));
+    }
+
+    @Operation(
+            summary = "Autocomplete product names",
+            description = "Products whose name has a word starting with the prefix, best sellers first"
+    )
+    @GetMapping("/autocomplete")
+    public ResponseEntity<List<ProductSuggestionDto>> autocomplete(
+            @Parameter(description = "What the user typed so far", example = "gam")
+            @RequestParam String prefix,
+            @RequestParam(required = false) Integer limit){
+        return ResponseEntity.ok(autocompleteService.suggest(prefix, limit));
+    }
+
+    @Operation(
+            summary = "Catalog facets",
+            description = "Product counts per category and a price histogram, for one category or the whole catalog"
+    )
+    @GetMapping("/facets")
+    public ResponseEntity<ProductFacetsResponseDto> facets(
+            @Parameter(description = "Restrict the price histogram to this category", example = "Electronics")
+            @RequestParam(required = false) String category){
+        return ResponseEntity.ok(facetService.getFacets(category));
+    }
+
+    @ApiResponse(responseCode = "200", description = "The product",
+            content = @Content(schema = @Schema(implementation = ProductResponseDto.class)))
+    @GetMapping(value = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<byte[]> getById(
+            @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            WebRequest webRequest){
+        ProductResponseDto product = service.getProductById(id);
+        if (ConditionalRequests.notModified(webRequest, product.getVersion(), product.getUpdatedAt())) {
+            return null;
+        }
+        String key = ProductResponseCache.PRODUCT_PREFIX + id;
+        return json(responseCache.get(key, String.valueOf(product.getVersion()), () -> product), acceptEncoding);
     }
 
     @PreAuthorize("hasRole('ADMIN')")
@@ -79,4 +254,15 @@ public class ProductController {
         service.deleteProduct(id);
         return ResponseEntity.noContent().build();
     }
+
+    private ResponseEntity<byte[]> json(ProductResponseCache.Body body, String acceptEncoding){
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .varyBy(HttpHeaders.ACCEPT_ENCODING);
+        byte[] gzip = ProductResponseCache.acceptsGzip(acceptEncoding) ? body.gzip() : null;
+        if (gzip != null) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(gzip);
+        }
+        return response.body(body.json());
+    }
 }
@@ -3,12 +3,18 @@ package com.example.onlineshop.Entity;
 import jakarta.persistence.*;
 import lombok.*;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 @Entity
 @Table(name = "carts")
+@NamedEntityGraph(
+        name = "Cart.withItems",
+        attributeNodes = @NamedAttributeNode(value = "items", subgraph = "items"),
+        subgraphs = @NamedSubgraph(name = "items", attributeNodes = @NamedAttributeNode("product"))
+)
 @Getter
 @Setter
 @NoArgsConstructor
@@ -17,16 +23,31 @@ import java.util.List;
 public class Cart {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "carts_id_seq")
+    @SequenceGenerator(name = "carts_id_seq", sequenceName = "carts_id_seq", allocationSize = 50)
     private Long id;
 
     // Each customer has one cart
-    @OneToOne
+    @OneToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "customer_id", nullable = false, unique = true)
     private Customer customer;
 
+    // lines keyed by product id, in the order they were added
     @OneToMany(mappedBy = "cart", cascade = CascadeType.ALL, orphanRemoval = true)
-    private List<CartItem> items = new ArrayList<>();
+    @MapKeyColumn(name = "product_id", insertable = false, updatable = false)
+    @OrderBy("id")
+    @Builder.Default
+    private Map<Long, CartItem> items = new LinkedHashMap<>();
+
+    @Version
+    private Long version;
+
+    // sum of quantity times current price over the lines, adjusted by every change
+    @Column(precision = 14, scale = 2)
+    @Builder.Default
+    private BigDecimal subtotal = BigDecimal.ZERO;
+
+    private int totalQuantity;
 
     private LocalDateTime createdAt;
 
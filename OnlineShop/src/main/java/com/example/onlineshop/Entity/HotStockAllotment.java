@@ -0,0 +1,32 @@
+package com.example.onlineshop.Entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Stock a hot product has handed to the in-memory counters and that no
+ * reconciliation has accounted for yet. Written by HotStockCounters only.
+ */
+@Entity
+@Table(name = "hot_stock_allotments")
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+@Builder
+public class HotStockAllotment {
+    @Id
+    private Long productId;
+
+    @Column(nullable = false)
+    private int allotted;
+
+    @Column(nullable = false)
+    private LocalDateTime reconciledAt;
+}
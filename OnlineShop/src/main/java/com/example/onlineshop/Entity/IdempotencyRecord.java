@@ -0,0 +1,56 @@
+package com.example.onlineshop.Entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * The response a request with an Idempotency-Key produced, stored in the same
+ * transaction as the request's own changes. Written by IdempotencyKeys only.
+ */
+@Entity
+@Table(name = "idempotency_keys", indexes = @Index(name = "idx_idempotency_keys_expires_at", columnList = "expiresAt"))
+@IdClass(IdempotencyRecord.Key.class)
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+@Builder
+public class IdempotencyRecord {
+    // the endpoint and resource the key was sent to, such as checkout:42
+    @Id
+    @Column(length = 64)
+    private String scope;
+
+    @Id
+    @Column(name = "idem_key", length = 100)
+    private String key;
+
+    // SHA-256 of the request body, a key reused for a different request is refused
+    @Column(nullable = false, length = 64)
+    private String fingerprint;
+
+    @Column(nullable = false, columnDefinition = "text")
+    private String response;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(nullable = false)
+    private LocalDateTime expiresAt;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private String scope;
+        private String key;
+    }
+}
@@ -10,6 +10,11 @@ import java.util.List;
 
 @Entity
 @Table(name = "orders")
+@NamedEntityGraph(
+        name = "Order.withItems",
+        attributeNodes = @NamedAttributeNode(value = "items", subgraph = "items"),
+        subgraphs = @NamedSubgraph(name = "items", attributeNodes = @NamedAttributeNode("product"))
+)
 @Getter
 @Setter
 @NoArgsConstructor
@@ -18,15 +23,17 @@ import java.util.List;
 public class Order {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "orders_id_seq")
+    @SequenceGenerator(name = "orders_id_seq", sequenceName = "orders_id_seq", allocationSize = 50)
     private Long id;
 
     // who placed the order
-    @ManyToOne(optional = false)
+    @ManyToOne(optional = false, fetch = FetchType.LAZY)
     private Customer customer;
 
     // list of order items
     @OneToMany(mappedBy = "order", cascade = CascadeType.ALL, orphanRemoval = true)
+    @Builder.Default
     private List<OrderItem> items = new ArrayList<>();
 
     private BigDecimal totalAmount;
@@ -35,4 +42,20 @@ public class Order {
     private OrderStatus status;
 
     private LocalDateTime createdAt;
+
+    @Version
+    private Long version;
+
+    private LocalDateTime updatedAt;
+
+    // set by OrderConfirmationNotifier, so a redelivered event sends nothing twice; only that
+    // statement writes it, an order saved from a copy loaded earlier cannot put it back to null
+    @Column(insertable = false, updatable = false)
+    private LocalDateTime confirmationSentAt;
+
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        updatedAt = LocalDateTime.now();
+    }
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package com.example.onlineshop.Entity;
 
+import com.example.onlineshop.Util.OrderItemId;
 import jakarta.persistence.*;
 import lombok.*;
 
@@ -14,14 +15,15 @@ import java.math.BigDecimal;
 @Builder
 public class OrderItem {
 
+    // order_items_id_seq, with the blocks for all of an order's lines fetched at once
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @OrderItemId
     private Long id;
 
-    @ManyToOne(optional = false)
+    @ManyToOne(optional = false, fetch = FetchType.LAZY)
     private Order order;
 
-    @ManyToOne(optional = false)
+    @ManyToOne(optional = false, fetch = FetchType.LAZY)
     private Product product;
 
     private int quantity;
@@ -0,0 +1,41 @@
+package com.example.onlineshop.Entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * A placed order whose post-order work has not run yet. Written in the order's
+ * transaction and deleted once every OrderPlacedHandler has handled it.
+ */
+@Entity
+@Table(name = "order_outbox", indexes = @Index(name = "idx_order_outbox_next_attempt_at", columnList = "nextAttemptAt"))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class OrderOutboxEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "order_outbox_id_seq")
+    @SequenceGenerator(name = "order_outbox_id_seq", sequenceName = "order_outbox_id_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long orderId;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    // due time, pushed out while a worker holds the event and after a failure
+    @Column(nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(length = 500)
+    private String lastError;
+}
@@ -2,10 +2,15 @@ package com.example.onlineshop.Entity;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.DynamicUpdate;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 
+// an edit writes only the columns it changed, so it never puts back a stock figure
+// that StockReservations lowered after the product was loaded
 @Entity
+@DynamicUpdate
 @Table(name = "products")
 @AllArgsConstructor
 @NoArgsConstructor
@@ -14,7 +19,8 @@ import java.math.BigDecimal;
 @Builder
 public class Product {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "products_id_seq")
+    @SequenceGenerator(name = "products_id_seq", sequenceName = "products_id_seq", allocationSize = 50)
     private Long id;
     private String name;
 
@@ -23,4 +29,15 @@ public class Product {
     private String description;
     private Integer stockQuantity;
     private String category;
+
+    @Version
+    private Long version;
+
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        updatedAt = LocalDateTime.now();
+    }
 }
@@ -0,0 +1,41 @@
+package com.example.onlineshop.Repository;
+
+import com.example.onlineshop.Entity.CartItem;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+
+public interface CartItemRepository extends JpaRepository<CartItem, Long> {
+
+    /**
+     * Adds quantity to the customer's line for the product, creating the line
+     * if there is none, and touches the cart, bumps its version and adds to its
+     * totals, all in one statement. Returns 0 if the customer has no cart or the
+     * product does not exist.
+     *
+     * The id comes from a nextval of its own, which skips the rest of that
+     * pooled block; ids are cheap, round trips are not.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = """
+            WITH cart AS (
+                UPDATE carts SET updated_at = :now, version = carts.version + 1,
+                                 subtotal = carts.subtotal + :quantity * COALESCE(p.price, 0),
+                                 total_quantity = carts.total_quantity + :quantity
+                FROM products p
+                WHERE carts.customer_id = :customerId AND p.id = :productId
+                RETURNING carts.id AS cart_id, p.id AS product_id
+            )
+            INSERT INTO cart_items (id, cart_id, product_id, quantity)
+            SELECT nextval('cart_items_id_seq'), cart.cart_id, cart.product_id, :quantity
+            FROM cart
+            ON CONFLICT (cart_id, product_id) DO UPDATE SET quantity = cart_items.quantity + EXCLUDED.quantity
+            """, nativeQuery = true)
+    int addQuantity(@Param("customerId") Long customerId,
+                    @Param("productId") Long productId,
+                    @Param("quantity") int quantity,
+                    @Param("now") LocalDateTime now);
+}
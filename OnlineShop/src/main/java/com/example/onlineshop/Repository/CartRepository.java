@@ -1,10 +1,37 @@
 package com.example.onlineshop.Repository;
 
 import com.example.onlineshop.Entity.Cart;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.math.BigDecimal;
 import java.util.Optional;
 
 public interface CartRepository extends JpaRepository<Cart, Long> {
     Optional<Cart> findByCustomerId(Long customerId);
-}
\ No newline at end of file
+
+    // cart with its lines and their products in one query
+    @EntityGraph("Cart.withItems")
+    Optional<Cart> findWithItemsByCustomerId(Long customerId);
+
+    @EntityGraph("Cart.withItems")
+    Optional<Cart> findWithItemsById(Long id);
+
+    /**
+     * Moves the subtotal of every cart holding the product by the price change
+     * times its quantity there. Finds those carts through the product_id index
+     * on cart_items, never by scanning carts. Returns the number of carts.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = """
+            UPDATE carts c
+            SET subtotal = c.subtotal + CAST(:delta AS NUMERIC(14, 2))
+                    * (SELECT ci.quantity FROM cart_items ci WHERE ci.cart_id = c.id AND ci.product_id = :productId),
+                version = c.version + 1
+            WHERE c.id IN (SELECT ci.cart_id FROM cart_items ci WHERE ci.product_id = :productId)
+            """, nativeQuery = true)
+    int repriceCartsHolding(@Param("productId") Long productId, @Param("delta") BigDecimal delta);
+}
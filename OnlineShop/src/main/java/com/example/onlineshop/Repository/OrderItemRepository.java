@@ -2,6 +2,38 @@ package com.example.onlineshop.Repository;
 
 import com.example.onlineshop.Entity.OrderItem;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
 
 public interface OrderItemRepository extends JpaRepository<OrderItem, Long> {
+
+    @Query("select oi.product.id as productId, sum(oi.quantity) as quantity from OrderItem oi group by oi.product.id")
+    List<ProductSales> sumQuantitiesByProduct();
+
+    // the lines of a page of orders with their product names, in one query
+    @Query("""
+            select oi.order.id as orderId, p.id as productId, p.name as productName,
+                   oi.quantity as quantity, oi.priceAtPurchase as priceAtPurchase
+            from OrderItem oi join oi.product p
+            where oi.order.id in :orderIds
+            order by oi.id
+            """)
+    List<OrderLine> findLinesByOrderIds(@Param("orderIds") Collection<Long> orderIds);
+
+    interface ProductSales {
+        Long getProductId();
+        Long getQuantity();
+    }
+
+    interface OrderLine {
+        Long getOrderId();
+        Long getProductId();
+        String getProductName();
+        int getQuantity();
+        BigDecimal getPriceAtPurchase();
+    }
 }
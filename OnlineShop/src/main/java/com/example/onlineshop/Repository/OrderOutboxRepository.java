@@ -0,0 +1,7 @@
+package com.example.onlineshop.Repository;
+
+import com.example.onlineshop.Entity.OrderOutboxEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface OrderOutboxRepository extends JpaRepository<OrderOutboxEvent, Long> {
+}
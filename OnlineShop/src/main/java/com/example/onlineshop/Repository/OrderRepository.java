@@ -1,10 +1,51 @@
 package com.example.onlineshop.Repository;
 
 import com.example.onlineshop.Entity.Order;
+import com.example.onlineshop.Entity.OrderStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 public interface OrderRepository extends JpaRepository<Order, Long> {
-    List<Order> findByCustomerId(Long customerId);
-}
\ No newline at end of file
+
+    @EntityGraph("Order.withItems")
+    Optional<Order> findWithItemsById(Long id);
+
+    // keyset page of a customer's orders, newest first by (createdAt, id)
+    @Query("""
+            select o.id as id, o.customer.id as customerId, o.totalAmount as totalAmount,
+                   o.status as status, o.createdAt as createdAt
+            from Order o
+            where o.customer.id = :customerId
+            order by o.createdAt desc, o.id desc
+            """)
+    List<OrderSummary> findFirstHistoryPage(@Param("customerId") Long customerId, Pageable pageable);
+
+    @Query("""
+            select o.id as id, o.customer.id as customerId, o.totalAmount as totalAmount,
+                   o.status as status, o.createdAt as createdAt
+            from Order o
+            where o.customer.id = :customerId
+              and (o.createdAt < :createdAt or (o.createdAt = :createdAt and o.id < :id))
+            order by o.createdAt desc, o.id desc
+            """)
+    List<OrderSummary> findHistoryPageAfter(@Param("customerId") Long customerId,
+                                            @Param("createdAt") LocalDateTime createdAt,
+                                            @Param("id") Long id,
+                                            Pageable pageable);
+
+    interface OrderSummary {
+        Long getId();
+        Long getCustomerId();
+        BigDecimal getTotalAmount();
+        OrderStatus getStatus();
+        LocalDateTime getCreatedAt();
+    }
+}
@@ -1,7 +1,65 @@
 package com.example.onlineshop.Repository;
 
 import com.example.onlineshop.Entity.Product;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
 
 public interface ProductRepository extends JpaRepository<Product,Long> {
+
+    // keyset page ordered by id
+    List<Product> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+    // keyset page ordered by (category, price, id); an uncategorized product sorts as category ''
+    @Query("select p from Product p order by coalesce(p.category, ''), p.price, p.id")
+    List<Product> findFirstCategoryPage(Pageable pageable);
+
+    @Query("""
+            select p from Product p
+            where coalesce(p.category, '') > :category
+               or (coalesce(p.category, '') = :category and p.price > :price)
+               or (coalesce(p.category, '') = :category and p.price = :price and p.id > :id)
+            order by coalesce(p.category, ''), p.price, p.id
+            """)
+    List<Product> findCategoryPageAfter(@Param("category") String category,
+                                        @Param("price") BigDecimal price,
+                                        @Param("id") Long id,
+                                        Pageable pageable);
+
+    // server-side cursor, rows are fetched from the driver in chunks
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select p from Product p order by p.id")
+    Stream<Product> streamAllOrderedById();
+
+    // one row per distinct (category, price), used to rebuild facet counts
+    @Query("select p.category as category, p.price as price, count(p) as count from Product p group by p.category, p.price")
+    List<CategoryPriceCount> countByCategoryAndPrice();
+
+    // category and price of a few products, for replaying facet deltas onto a reconcile
+    @Query("select p.id as id, p.category as category, p.price as price from Product p where p.id in :ids")
+    List<CategoryPrice> findCategoryPrices(@Param("ids") Collection<Long> ids);
+
+    interface CategoryPriceCount {
+        String getCategory();
+        BigDecimal getPrice();
+        Long getCount();
+    }
+
+    interface CategoryPrice {
+        Long getId();
+        String getCategory();
+        BigDecimal getPrice();
+    }
 }
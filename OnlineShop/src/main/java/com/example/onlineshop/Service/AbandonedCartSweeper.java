@@ -0,0 +1,161 @@
+package com.example.onlineshop.Service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Deletes carts, with their lines, that nobody has changed for
+ * cart.sweeper.max-age.
+ *
+ * A run walks the stale carts in id order, cart.sweeper.batch-size at a time,
+ * each batch in its own short transaction: one query locks the batch, two
+ * set-based deletes remove the lines and the carts. Rows another transaction
+ * holds, such as a cart in the middle of a checkout, are skipped rather than
+ * waited for. Batches are separated by cart.sweeper.pause and a run stops
+ * after cart.sweeper.max-batches, so a large backlog drains over several
+ * runs instead of in one long burst. A customer whose cart was swept gets a
+ * new empty one on the next visit.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "cart.sweeper.enabled", havingValue = "true", matchIfMissing = true)
+public class AbandonedCartSweeper implements MeterBinder {
+
+    private static final String SELECT_BATCH_SQL =
+            "SELECT id FROM carts WHERE updated_at < ? AND id > ? ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED";
+    private static final String DELETE_ITEMS_SQL = "DELETE FROM cart_items WHERE cart_id IN (:ids)";
+    private static final String DELETE_CARTS_SQL = "DELETE FROM carts WHERE id IN (:ids)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    // present with cart.store.mode=write-behind
+    private final Optional<CartWriteBehindStore> writeBehind;
+    private final Duration maxAge;
+    private final int batchSize;
+    private final int maxBatches;
+    private final Duration pause;
+
+    private final LongAdder cartsPurged = new LongAdder();
+    private final LongAdder itemsPurged = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder batchNanos = new LongAdder();
+
+    public AbandonedCartSweeper(JdbcTemplate jdbcTemplate,
+                                TransactionTemplate transactionTemplate,
+                                Optional<CartWriteBehindStore> writeBehind,
+                                @Value("${cart.sweeper.max-age:P30D}") Duration maxAge,
+                                @Value("${cart.sweeper.batch-size:500}") int batchSize,
+                                @Value("${cart.sweeper.max-batches:200}") int maxBatches,
+                                @Value("${cart.sweeper.pause:PT0.2S}") Duration pause) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.transactionTemplate = transactionTemplate;
+        this.writeBehind = writeBehind;
+        this.maxAge = maxAge;
+        this.batchSize = batchSize;
+        this.maxBatches = maxBatches;
+        this.pause = pause;
+    }
+
+    @Scheduled(fixedDelayString = "${cart.sweeper.interval:PT1H}",
+            initialDelayString = "${cart.sweeper.interval:PT1H}")
+    public void sweep() {
+        Timestamp cutoff = Timestamp.valueOf(LocalDateTime.now().minus(maxAge));
+        long started = System.nanoTime();
+        long lastId = 0;
+        int carts = 0;
+        for (int batch = 0; batch < maxBatches; batch++) {
+            long batchStarted = System.nanoTime();
+            long afterId = lastId;
+            Batch result = transactionTemplate.execute(status -> deleteBatch(cutoff, afterId));
+            batches.increment();
+            batchNanos.add(System.nanoTime() - batchStarted);
+            carts += result.carts();
+
+            if (result.selected() < batchSize || !pause()) {
+                break;
+            }
+            lastId = result.lastId();
+        }
+        if (carts > 0) {
+            log.info("Swept {} abandoned carts in {} ms", carts, (System.nanoTime() - started) / 1_000_000);
+        }
+    }
+
+    public long cartsPurgedCount() {
+        return cartsPurged.sum();
+    }
+
+    public long itemsPurgedCount() {
+        return itemsPurged.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("cart.sweeper.carts.purged", this, AbandonedCartSweeper::cartsPurgedCount)
+                .register(registry);
+        FunctionCounter.builder("cart.sweeper.items.purged", this, AbandonedCartSweeper::itemsPurgedCount)
+                .register(registry);
+        FunctionTimer.builder("cart.sweeper.batch", this,
+                        sweeper -> sweeper.batches.sum(), sweeper -> sweeper.batchNanos.sum(), TimeUnit.NANOSECONDS)
+                .register(registry);
+    }
+
+    private Batch deleteBatch(Timestamp cutoff, long afterId) {
+        List<Long> selected = jdbcTemplate.queryForList(SELECT_BATCH_SQL, Long.class, cutoff, afterId, batchSize);
+        if (selected.isEmpty()) {
+            return new Batch(0, afterId, 0);
+        }
+        long lastId = selected.get(selected.size() - 1);
+        List<Long> ids = writeBehind
+                .map(store -> selected.stream().filter(id -> !store.isLoaded(id)).toList())
+                .orElse(selected);
+        if (ids.isEmpty()) {
+            return new Batch(selected.size(), lastId, 0);
+        }
+
+        Map<String, List<Long>> params = Map.of("ids", ids);
+        int items = namedJdbcTemplate.update(DELETE_ITEMS_SQL, params);
+        int carts = namedJdbcTemplate.update(DELETE_CARTS_SQL, params);
+        itemsPurged.add(items);
+        cartsPurged.add(carts);
+        return new Batch(selected.size(), lastId, carts);
+    }
+
+    // false if interrupted, which ends the run
+    private boolean pause() {
+        if (pause.isZero()) {
+            return true;
+        }
+        try {
+            Thread.sleep(pause.toMillis());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private record Batch(int selected, long lastId, int carts) {
+    }
+}
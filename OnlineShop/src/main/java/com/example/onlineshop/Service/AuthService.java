@@ -15,6 +15,7 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
 import java.util.Set;
@@ -81,6 +82,7 @@ public class AuthService {
 
 //    private static final long REFRESH_TOKEN_DURATION_MS = 7 * 24 * 60 * 60 * 1000;
 
+    @Transactional
     public String register(RegisterRequest request) {
         if (userRepository.existsByUsername(request.getUsername())) {
             throw new RuntimeException("Username is already taken");
@@ -112,6 +114,7 @@ public class AuthService {
         return "User registered successfully with customer profile";
     }
 
+    // no transaction: password checking is slow and must not hold a connection
     public AuthResponse login(LoginRequest request) {
         Authentication auth = authenticationManager.authenticate(
                 new UsernamePasswordAuthenticationToken(
@@ -142,6 +145,7 @@ public class AuthService {
 //        return refreshTokenRepository.save(refreshToken);
 //    }
 
+    @Transactional
     public RefreshToken verifyAndRotateRefreshToken(String token) {
         RefreshToken refreshToken = refreshTokenRepository.findByToken(token)
                 .orElseThrow(() -> new RuntimeException("Invalid refresh token"));
@@ -158,6 +162,7 @@ public class AuthService {
         return jwtUtil.createRefreshToken(refreshToken.getUser());
     }
 
+    @Transactional
     public AuthResponse refreshToken(String token) {
         RefreshToken refreshToken = refreshTokenRepository.findByToken(token)
                 .orElseThrow(() -> new RuntimeException("Invalid refresh token"));
@@ -180,6 +185,7 @@ public class AuthService {
         return new AuthResponse(newAccessToken, newRefreshToken.getToken());
     }
 
+    @Transactional
     public void logout(User user) {
         refreshTokenRepository.deleteByUser(user);
     }
@@ -2,91 +2,255 @@ package com.example.onlineshop.Service;
 
 import com.example.onlineshop.Repository.OrderRepository;
 import com.example.onlineshop.dto.CartItemRequestDto;
+import com.example.onlineshop.dto.CartOperationDto;
 import com.example.onlineshop.dto.CartResponseDto;
+import com.example.onlineshop.dto.OrderResponseDto;
 import com.example.onlineshop.Entity.*;
 import com.example.onlineshop.Util.CartMapper;
+import com.example.onlineshop.Util.CartOperations;
+import com.example.onlineshop.Util.OrderMapper;
+import com.example.onlineshop.Repository.CartItemRepository;
 import com.example.onlineshop.Repository.CartRepository;
 import com.example.onlineshop.Repository.CustomerRepository;
 import com.example.onlineshop.Repository.ProductRepository;
-import lombok.RequiredArgsConstructor;
+import com.example.onlineshop.event.ProductChangedEvent;
+import com.example.onlineshop.exception.InvalidRequestException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
-@RequiredArgsConstructor
 public class CartService {
 
     private final CartRepository cartRepository;
+    private final CartItemRepository cartItemRepository;
     private final CustomerRepository customerRepository;
     private final ProductRepository productRepository;
     private final OrderRepository orderRepository;
     private final CartMapper cartMapper;
+    private final OrderMapper orderMapper;
+    // present with cart.store.mode=write-behind
+    private final Optional<CartWriteBehindStore> writeBehind;
+    // gives every mutation its own transaction, retried on a version conflict
+    private final CartUpdateRunner cartUpdates;
+    private final StockReservations stockReservations;
+    private final IdempotencyKeys idempotencyKeys;
+    private final OrderOutbox orderOutbox;
+    private final int maxOperations;
+
+    public CartService(CartRepository cartRepository,
+                       CartItemRepository cartItemRepository,
+                       CustomerRepository customerRepository,
+                       ProductRepository productRepository,
+                       OrderRepository orderRepository,
+                       CartMapper cartMapper,
+                       OrderMapper orderMapper,
+                       Optional<CartWriteBehindStore> writeBehind,
+                       CartUpdateRunner cartUpdates,
+                       StockReservations stockReservations,
+                       IdempotencyKeys idempotencyKeys,
+                       OrderOutbox orderOutbox,
+                       @Value("${cart.batch.max-operations:200}") int maxOperations) {
+        this.cartRepository = cartRepository;
+        this.cartItemRepository = cartItemRepository;
+        this.customerRepository = customerRepository;
+        this.productRepository = productRepository;
+        this.orderRepository = orderRepository;
+        this.cartMapper = cartMapper;
+        this.orderMapper = orderMapper;
+        this.writeBehind = writeBehind;
+        this.cartUpdates = cartUpdates;
+        this.stockReservations = stockReservations;
+        this.idempotencyKeys = idempotencyKeys;
+        this.orderOutbox = orderOutbox;
+        this.maxOperations = maxOperations;
+    }
 
     public CartResponseDto getCart(Long customerId) {
-        Cart cart = cartRepository.findByCustomerId(customerId)
-                .orElseGet(() -> createEmptyCart(customerId));
-        return cartMapper.toResponse(cart);
+        if (writeBehind.isPresent()) {
+            return writeBehind.get().getCart(customerId);
+        }
+        // not read-only, the first view creates the cart
+        return cartUpdates.run(customerId, () -> {
+            Cart cart = cartRepository.findWithItemsByCustomerId(customerId)
+                    .orElseGet(() -> createEmptyCart(customerId));
+            return cartMapper.toResponse(cart);
+        });
     }
 
     public CartResponseDto addItem(Long customerId, CartItemRequestDto request) {
-        Cart cart = cartRepository.findByCustomerId(customerId)
-                .orElseGet(() -> createEmptyCart(customerId));
-
-        Product product = productRepository.findById(request.getProductId())
-                .orElseThrow(() -> new RuntimeException("Product not found"));
-
-        // check if product already in cart
-        CartItem existing = cart.getItems().stream()
-                .filter(i -> i.getProduct().getId().equals(product.getId()))
-                .findFirst()
-                .orElse(null);
-
-        if (existing != null) {
-            existing.setQuantity(existing.getQuantity() + request.getQuantity());
-        } else {
-            CartItem newItem = CartItem.builder()
-                    .cart(cart)
-                    .product(product)
-                    .quantity(request.getQuantity())
-                    .build();
-            cart.getItems().add(newItem);
+        // write-behind changes memory only and needs neither a transaction nor the runner's retries
+        if (writeBehind.isPresent()) {
+            return writeBehind.get().addItem(customerId, request.getProductId(), request.getQuantity());
         }
+        return cartUpdates.run(customerId, () -> {
+            // one upsert, concurrent adds of the same product sum up in a single line
+            if (addQuantity(customerId, request) == 0) {
+                if (!productRepository.existsById(request.getProductId())) {
+                    throw new RuntimeException("Product not found");
+                }
+                createEmptyCart(customerId);
+                addQuantity(customerId, request);
+            }
 
-        cart.setUpdatedAt(LocalDateTime.now());
-        return cartMapper.toResponse(cartRepository.save(cart));
+            Cart cart = cartRepository.findWithItemsByCustomerId(customerId)
+                    .orElseThrow(() -> new RuntimeException("Cart not found"));
+            return cartMapper.toResponse(cart);
+        });
+    }
+
+    private int addQuantity(Long customerId, CartItemRequestDto request) {
+        return cartItemRepository.addQuantity(customerId, request.getProductId(), request.getQuantity(),
+                LocalDateTime.now());
     }
 
     public CartResponseDto removeItem(Long customerId, Long productId) {
-        Cart cart = cartRepository.findByCustomerId(customerId)
-                .orElseThrow(() -> new RuntimeException("Cart not found"));
+        if (writeBehind.isPresent()) {
+            return writeBehind.get().removeItem(customerId, productId);
+        }
+        return cartUpdates.run(customerId, () -> {
+            Cart cart = cartRepository.findWithItemsByCustomerId(customerId)
+                    .orElseThrow(() -> new RuntimeException("Cart not found"));
 
-        cart.getItems().removeIf(item -> item.getProduct().getId().equals(productId));
-        cart.setUpdatedAt(LocalDateTime.now());
-        return cartMapper.toResponse(cartRepository.save(cart));
+            CartItem item = cart.getItems().get(productId);
+            if (item != null) {
+                adjustTotals(cart, item.getProduct(), -item.getQuantity());
+            }
+            claim(cart);
+            cart.getItems().remove(productId);
+            return cartMapper.toResponse(cart);
+        });
     }
 
     public CartResponseDto updateItem(Long customerId, Long productId, int quantity) {
-        Cart cart = cartRepository.findByCustomerId(customerId)
-                .orElseThrow(() -> new RuntimeException("Cart not found"));
-
-        CartItem item = cart.getItems().stream()
-                .filter(i -> i.getProduct().getId().equals(productId))
-                .findFirst()
-                .orElseThrow(() -> new RuntimeException("Item not found in cart"));
-
-        if (quantity <= 0) {
-            // remove item if quantity is 0
-            cart.getItems().remove(item);
-        } else {
-            item.setQuantity(quantity);
+        if (writeBehind.isPresent()) {
+            return writeBehind.get().updateItem(customerId, productId, quantity);
+        }
+        return cartUpdates.run(customerId, () -> {
+            Cart cart = cartRepository.findWithItemsByCustomerId(customerId)
+                    .orElseThrow(() -> new RuntimeException("Cart not found"));
+
+            CartItem item = cart.getItems().get(productId);
+            if (item == null) {
+                throw new RuntimeException("Item not found in cart");
+            }
+
+            adjustTotals(cart, item.getProduct(), Math.max(quantity, 0) - item.getQuantity());
+            claim(cart);
+            if (quantity <= 0) {
+                // remove item if quantity is 0
+                cart.getItems().remove(productId);
+            } else {
+                item.setQuantity(quantity);
+            }
+            return cartMapper.toResponse(cart);
+        });
+    }
+
+    /**
+     * Applies the operations in order as one change: either all of them land or,
+     * if any is invalid or names an unknown product, none does.
+     */
+    public CartResponseDto applyOperations(Long customerId, List<CartOperationDto> operations) {
+        CartOperations.validate(operations, maxOperations);
+        if (writeBehind.isPresent()) {
+            return writeBehind.get().applyOperations(customerId, operations);
+        }
+        return cartUpdates.run(customerId, () -> {
+            Map<Long, Product> products = findProducts(CartOperations.productsToCheck(operations));
+
+            Cart cart = cartRepository.findWithItemsByCustomerId(customerId)
+                    .orElseGet(() -> createEmptyCart(customerId));
+            Map<Long, Integer> quantities = new LinkedHashMap<>();
+            cart.getItems().forEach((productId, item) -> quantities.put(productId, item.getQuantity()));
+            Map<Long, Integer> result = CartOperations.apply(quantities, operations);
+
+            cart.getItems().forEach((productId, item) ->
+                    adjustTotals(cart, item.getProduct(), result.getOrDefault(productId, 0) - item.getQuantity()));
+            result.forEach((productId, quantity) -> {
+                if (!quantities.containsKey(productId)) {
+                    adjustTotals(cart, products.get(productId), quantity);
+                }
+            });
+            claim(cart);
+            cart.getItems().keySet().removeIf(productId -> !result.containsKey(productId));
+            result.forEach((productId, quantity) -> {
+                CartItem item = cart.getItems().get(productId);
+                if (item != null) {
+                    item.setQuantity(quantity);
+                } else {
+                    cart.getItems().put(productId, CartItem.builder()
+                            .cart(cart)
+                            .product(products.get(productId))
+                            .quantity(quantity)
+                            .build());
+                }
+            });
+            return cartMapper.toResponse(cart);
+        });
+    }
+
+    // one IN query for the whole batch
+    private Map<Long, Product> findProducts(Set<Long> ids) {
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+        Map<Long, Product> products = productRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        List<Long> unknown = ids.stream().filter(id -> !products.containsKey(id)).toList();
+        if (!unknown.isEmpty()) {
+            throw new InvalidRequestException("Unknown product ids: " + unknown);
+        }
+        return products;
+    }
+
+    /**
+     * Reprices the carts holding a product whose price changed, inside the
+     * product's own transaction so both commit or neither does.
+     */
+    @EventListener
+    @Transactional
+    public void onProductChanged(ProductChangedEvent event) {
+        if (event.isCreate() || event.isDelete()) {
+            return;
+        }
+        BigDecimal delta = priceOf(event.current().price()).subtract(priceOf(event.previous().price()));
+        if (delta.signum() != 0) {
+            cartRepository.repriceCartsHolding(event.productId(), delta);
         }
+    }
+
+    // the cart's totals move by the change, callers adjust before claim() so the cart row is written once
+    private static void adjustTotals(Cart cart, Product product, int quantityDelta) {
+        cart.setTotalQuantity(cart.getTotalQuantity() + quantityDelta);
+        cart.setSubtotal(cart.getSubtotal()
+                .add(CartMapper.priceOf(product).multiply(BigDecimal.valueOf(quantityDelta))));
+    }
 
+    private static BigDecimal priceOf(BigDecimal price) {
+        return price == null ? BigDecimal.ZERO : price;
+    }
+
+    /**
+     * Writes the versioned cart row before any of its lines. A concurrent change
+     * to the same cart fails right here as a version conflict, which the runner
+     * retries, instead of later on a line or, for a second checkout, placing the
+     * same order twice.
+     */
+    private void claim(Cart cart) {
         cart.setUpdatedAt(LocalDateTime.now());
-        return cartMapper.toResponse(cartRepository.save(cart));
+        cartRepository.saveAndFlush(cart);
     }
 
     private Cart createEmptyCart(Long customerId) {
@@ -101,30 +265,81 @@ public class CartService {
         return cartRepository.save(cart);
     }
 
-    @Transactional
-    public Order checkout(Long cartId) {
-        Cart cart = cartRepository.findById(cartId)
-                .orElseThrow(() -> new RuntimeException("Cart not found"));
+    /**
+     * checkout behind an Idempotency-Key: a repeated key returns the order the
+     * first checkout placed. The key is stored in the checkout's transaction,
+     * so a version conflict retries both. Every attempt looks the key up
+     * first: a conflict with the same checkout committed by another instance
+     * then replays its order instead of finding the cart emptied.
+     */
+    public OrderResponseDto checkout(Long cartId, String idempotencyKey) {
+        return idempotencyKeys.execute("checkout:" + cartId, idempotencyKey, cartId, OrderResponseDto.class,
+                claim -> cartUpdates.run(null, () -> {
+                    OrderResponseDto placed = idempotencyKeys.find(claim, OrderResponseDto.class);
+                    return placed != null ? placed : idempotencyKeys.record(claim, checkout(cartId));
+                }));
+    }
 
-        if (cart.getItems().isEmpty()) {
-            throw new RuntimeException("Cart is empty");
-        }
+    public OrderResponseDto checkout(Long cartId) {
+        orderOutbox.admit();
+        return cartUpdates.run(null, () -> {
+            if (writeBehind.isPresent()) {
+                return writeBehind.get().checkout(cartId, this::placeOrder);
+            }
 
+            Cart cart = cartRepository.findWithItemsById(cartId)
+                    .orElseThrow(() -> new RuntimeException("Cart not found"));
+
+            if (cart.getItems().isEmpty()) {
+                throw new RuntimeException("Cart is empty");
+            }
+
+            cart.setSubtotal(BigDecimal.ZERO);
+            cart.setTotalQuantity(0);
+            claim(cart);
+            Map<Product, Integer> lines = new LinkedHashMap<>();
+            cart.getItems().values().forEach(item -> lines.put(item.getProduct(), item.getQuantity()));
+            OrderResponseDto order = saveOrder(cart.getCustomer(), lines);
+
+            // Clear cart
+            cart.getItems().clear();
+
+            return order;
+        });
+    }
+
+    // write-behind checkout: the lines come from memory, their products from one query
+    private OrderResponseDto placeOrder(Long customerId, Map<Long, Integer> quantities) {
+        Map<Long, Product> products = productRepository.findAllById(quantities.keySet()).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+
+        Map<Product, Integer> lines = new LinkedHashMap<>();
+        quantities.forEach((productId, quantity) -> {
+            Product product = products.get(productId);
+            if (product == null) {
+                throw new RuntimeException("Product not found");
+            }
+            lines.put(product, quantity);
+        });
+        return saveOrder(customerRepository.getReferenceById(customerId), lines);
+    }
+
+    private OrderResponseDto saveOrder(Customer customer, Map<Product, Integer> lines) {
         // Create new order
         Order order = new Order();
-        order.setCustomer(cart.getCustomer());
+        order.setCustomer(customer);
         order.setCreatedAt(LocalDateTime.now());
         order.setStatus(OrderStatus.PENDING);
 
-        // Convert cart items → order items
-        List<OrderItem> orderItems = cart.getItems().stream()
-                .map(cartItem -> OrderItem.builder()
+        // Convert cart lines → order items
+        List<OrderItem> orderItems = lines.entrySet().stream()
+                .map(line -> OrderItem.builder()
                         .order(order)
-                        .product(cartItem.getProduct())
-                        .quantity(cartItem.getQuantity())
-                        .priceAtPurchase(cartItem.getProduct().getPrice())
+                        .product(line.getKey())
+                        .quantity(line.getValue())
+                        .priceAtPurchase(line.getKey().getPrice())
                         .build())
-                .toList();
+                .collect(Collectors.toList());
 
         order.setItems(orderItems);
 
@@ -136,13 +351,14 @@ public class CartService {
 
         order.setTotalAmount(totalAmount);
 
-        // Save order
-        Order savedOrder = orderRepository.save(order);
-
-        // Clear cart
-        cart.getItems().clear();
-        cartRepository.save(cart);
+        // last step before saving, the stock rows stay locked until commit
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        lines.forEach((product, quantity) -> quantities.merge(product.getId(), quantity, Integer::sum));
+        stockReservations.reserve(quantities);
 
-        return savedOrder;
+        // Save order, the post-order work runs after commit from the outbox
+        Order saved = orderRepository.save(order);
+        orderOutbox.append(saved);
+        return orderMapper.toResponse(saved);
     }
 }
@@ -0,0 +1,110 @@
+package com.example.onlineshop.Service;
+
+import com.example.onlineshop.Util.StripedLocks;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Runs a cart mutation in its own transaction and runs it again when the
+ * cart's version shows another request changed it in the meantime, up to
+ * cart.update.max-attempts times.
+ *
+ * With cart.locks.enabled, mutations of the same customer's cart also wait
+ * for each other on an in-process striped lock, so within one instance they
+ * rarely conflict at all and other customers are never blocked. The version
+ * check still guards against other instances.
+ */
+@Slf4j
+@Component
+public class CartUpdateRunner implements MeterBinder {
+
+    private final TransactionTemplate transactionTemplate;
+    private final int maxAttempts;
+    // null when cart.locks.enabled=false
+    private final StripedLocks locks;
+
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder exhausted = new LongAdder();
+
+    public CartUpdateRunner(TransactionTemplate transactionTemplate,
+                            @Value("${cart.update.max-attempts:5}") int maxAttempts,
+                            @Value("${cart.locks.enabled:true}") boolean locksEnabled,
+                            @Value("${cart.locks.stripes:64}") int stripes) {
+        this.transactionTemplate = transactionTemplate;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.locks = locksEnabled ? new StripedLocks(stripes) : null;
+    }
+
+    /**
+     * Runs the update for the given customer's cart. A null customer id skips
+     * the lock, for callers that only know the cart.
+     */
+    public <T> T run(Long customerId, Supplier<T> update) {
+        ReentrantLock lock = locks == null || customerId == null ? null : locks.get(customerId);
+        if (lock == null) {
+            return withRetry(update);
+        }
+        lock.lock();
+        try {
+            return withRetry(update);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long retryCount() {
+        return retries.sum();
+    }
+
+    public long exhaustedCount() {
+        return exhausted.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("cart.update.retries", this, CartUpdateRunner::retryCount).register(registry);
+        FunctionCounter.builder("cart.update.exhausted", this, CartUpdateRunner::exhaustedCount).register(registry);
+    }
+
+    private <T> T withRetry(Supplier<T> update) {
+        // inside a caller's transaction a second attempt would see the same stale cart
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return transactionTemplate.execute(status -> update.get());
+        }
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> update.get());
+            } catch (ConcurrencyFailureException e) {
+                if (attempt >= maxAttempts) {
+                    exhausted.increment();
+                    throw e;
+                }
+                retries.increment();
+                log.debug("Cart update conflicted on attempt {}, retrying", attempt);
+                backOff(attempt);
+            }
+        }
+    }
+
+    // a short random pause keeps conflicting requests from colliding again right away
+    private static void backOff(int attempt) {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(1, 5L * attempt + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while retrying a cart update", e);
+        }
+    }
+}
@@ -0,0 +1,631 @@
+package com.example.onlineshop.Service;
+
+import com.example.onlineshop.Entity.Cart;
+import com.example.onlineshop.Entity.Customer;
+import com.example.onlineshop.Repository.CartRepository;
+import com.example.onlineshop.Repository.CustomerRepository;
+import com.example.onlineshop.Util.CartMapper;
+import com.example.onlineshop.Util.CartOperations;
+import com.example.onlineshop.Util.SequenceBlocks;
+import com.example.onlineshop.dto.CartItemResponseDto;
+import com.example.onlineshop.dto.CartOperationDto;
+import com.example.onlineshop.dto.CartResponseDto;
+import com.example.onlineshop.dto.ProductResponseDto;
+import com.example.onlineshop.event.ProductChangedEvent;
+import com.example.onlineshop.exception.InvalidRequestException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Cart state kept in memory and written to carts/cart_items behind the request.
+ *
+ * Enabled with cart.store.mode=write-behind. Every customer's cart lives in
+ * one in-process object; a mutation changes it under its lock and marks it
+ * dirty. Mutations run outside any transaction and look products up through
+ * ProductService's cache, so a click on a loaded cart usually takes no
+ * connection at all. Dirty carts are written in one transaction per run, each cart as a
+ * delete plus a batch insert of its current lines, so any number of clicks
+ * between two runs costs one write. A run starts every
+ * cart.store.flush-interval, as soon as cart.store.flush-threshold carts are
+ * dirty, and right after a checkout. Runs never overlap and always take their
+ * snapshots after starting, so the database only ever moves forward.
+ *
+ * Durability: a graceful shutdown flushes everything still dirty. A crash or
+ * kill loses the cart changes made since the last successful run, at most
+ * one flush interval or threshold worth. Orders are never affected: checkout
+ * reads the in-memory lines and, in the order's transaction, writes the order
+ * and takes the ordered lines out of cart_items, so a reloaded cart never
+ * holds what was already bought. A failed run keeps its carts dirty and they
+ * are retried on the next one.
+ *
+ * The state is per process, so with more than one instance every customer
+ * must be routed to the same one. Carts that are clean and have been idle
+ * for cart.store.idle-eviction are dropped from memory and reloaded on the
+ * next access.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "cart.store.mode", havingValue = "write-behind")
+public class CartWriteBehindStore implements MeterBinder {
+
+    private static final String DELETE_ITEMS_SQL = "DELETE FROM cart_items WHERE cart_id = ?";
+    // lines whose product or cart was deleted meanwhile are skipped instead of failing the run
+    private static final String INSERT_ITEM_SQL =
+            "INSERT INTO cart_items (id, cart_id, product_id, quantity) "
+                    + "SELECT ?, ?, ?, ? WHERE EXISTS (SELECT 1 FROM products WHERE id = ?) "
+                    + "AND EXISTS (SELECT 1 FROM carts WHERE id = ?)";
+    private static final String TOUCH_CART_SQL =
+            "UPDATE carts SET updated_at = ?, subtotal = ?, total_quantity = ? WHERE id = ?";
+    // checkout takes the ordered quantities off the written lines, whatever the last run left there
+    private static final String DELETE_ORDERED_SQL =
+            "DELETE FROM cart_items WHERE cart_id = ? AND product_id = ? AND quantity <= ?";
+    private static final String DECREMENT_ORDERED_SQL =
+            "UPDATE cart_items SET quantity = quantity - ? WHERE cart_id = ? AND product_id = ? AND quantity > ?";
+
+    private final CartRepository cartRepository;
+    private final CustomerRepository customerRepository;
+    private final ProductService productService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final SequenceBlocks sequenceBlocks;
+    private final int flushThreshold;
+    private final long idleEvictionNanos;
+
+    private final Map<Long, CartState> byCustomer = new ConcurrentHashMap<>();
+    private final Map<Long, CartState> byCart = new ConcurrentHashMap<>();
+    // product id -> loaded carts with a line for it, so a price change touches only those
+    private final Map<Long, Set<CartState>> byProduct = new ConcurrentHashMap<>();
+    private final Set<CartState> dirty = ConcurrentHashMap.newKeySet();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final ExecutorService flusher = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "cart-flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public CartWriteBehindStore(CartRepository cartRepository,
+                                CustomerRepository customerRepository,
+                                ProductService productService,
+                                JdbcTemplate jdbcTemplate,
+                                TransactionTemplate transactionTemplate,
+                                SequenceBlocks sequenceBlocks,
+                                @Value("${cart.store.flush-threshold:500}") int flushThreshold,
+                                @Value("${cart.store.idle-eviction:PT30M}") Duration idleEviction) {
+        this.cartRepository = cartRepository;
+        this.customerRepository = customerRepository;
+        this.productService = productService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.sequenceBlocks = sequenceBlocks;
+        this.flushThreshold = flushThreshold;
+        this.idleEvictionNanos = idleEviction.toNanos();
+    }
+
+    public CartResponseDto getCart(Long customerId) {
+        return withState(customerId, true, this::toResponse);
+    }
+
+    public CartResponseDto addItem(Long customerId, Long productId, int quantity) {
+        ProductResponseDto product = productService.getProductById(productId);
+        return withState(customerId, true, state -> {
+            Line old = state.lines.get(productId);
+            putLine(state, new Line(productId, product.getName(), priceOf(product.getPrice()),
+                    (old == null ? 0 : old.quantity()) + quantity));
+            return changed(state);
+        });
+    }
+
+    public CartResponseDto updateItem(Long customerId, Long productId, int quantity) {
+        return withState(customerId, false, state -> {
+            Line line = state.lines.get(productId);
+            if (line == null) {
+                throw new RuntimeException("Item not found in cart");
+            }
+            if (quantity <= 0) {
+                removeLine(state, productId);
+            } else {
+                putLine(state, line.withQuantity(quantity));
+            }
+            return changed(state);
+        });
+    }
+
+    public CartResponseDto removeItem(Long customerId, Long productId) {
+        return withState(customerId, false, state -> {
+            removeLine(state, productId);
+            return changed(state);
+        });
+    }
+
+    /**
+     * Applies validated operations as one change, or none of them if any
+     * names an unknown product.
+     */
+    public CartResponseDto applyOperations(Long customerId, List<CartOperationDto> operations) {
+        Set<Long> toCheck = CartOperations.productsToCheck(operations);
+        Map<Long, ProductResponseDto> products = productService.findAllById(toCheck);
+        List<Long> unknown = toCheck.stream().filter(id -> !products.containsKey(id)).toList();
+        if (!unknown.isEmpty()) {
+            throw new InvalidRequestException("Unknown product ids: " + unknown);
+        }
+        return withState(customerId, true, state -> {
+            Map<Long, Integer> quantities = new LinkedHashMap<>();
+            state.lines.values().forEach(line -> quantities.put(line.productId(), line.quantity()));
+            Map<Long, Integer> result = CartOperations.apply(quantities, operations);
+
+            quantities.keySet().stream()
+                    .filter(productId -> !result.containsKey(productId))
+                    .forEach(productId -> removeLine(state, productId));
+            result.forEach((productId, quantity) -> {
+                Line old = state.lines.get(productId);
+                ProductResponseDto product = products.get(productId);
+                putLine(state, old != null
+                        ? old.withQuantity(quantity)
+                        : new Line(productId, product.getName(), priceOf(product.getPrice()), quantity));
+            });
+            return changed(state);
+        });
+    }
+
+    /**
+     * Places an order from the in-memory lines of a cart. Must run inside the
+     * order's transaction, which also takes the ordered quantities out of
+     * cart_items; the in-memory cart loses them once that transaction commits.
+     *
+     * The cart counts as checking out from here until that transaction ends,
+     * and a second checkout of it meanwhile fails with a concurrency failure,
+     * like the version conflict write-through mode raises, so the same lines
+     * are never ordered twice. Flush runs leave the cart alone meanwhile, so
+     * none writes the ordered lines back over the order's change, and a
+     * checkout waits for a run already writing the cart. placeOrder runs
+     * without the cart's lock, so cart changes do not wait for the order's
+     * database work.
+     */
+    public <T> T checkout(Long cartId, BiFunction<Long, Map<Long, Integer>, T> placeOrder) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Checkout must run inside the order's transaction");
+        }
+        CartState state;
+        Map<Long, Integer> ordered = new LinkedHashMap<>();
+        while (true) {
+            state = byCart.get(cartId);
+            if (state == null) {
+                state = load(cartRepository.findWithItemsById(cartId)
+                        .orElseThrow(() -> new RuntimeException("Cart not found")));
+            }
+            synchronized (state) {
+                awaitFlush(state);
+                if (state.evicted) {
+                    continue;
+                }
+                if (state.checkingOut) {
+                    throw new ConcurrencyFailureException("Cart " + cartId + " is already being checked out");
+                }
+                state.lines.values().forEach(line -> ordered.put(line.productId(), line.quantity()));
+                if (ordered.isEmpty()) {
+                    throw new RuntimeException("Cart is empty");
+                }
+                state.checkingOut = true;
+                break;
+            }
+        }
+
+        CartState target = state;
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                removeOrdered(target, ordered);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                synchronized (target) {
+                    target.checkingOut = false;
+                }
+            }
+        });
+        T order = placeOrder.apply(target.customerId, ordered);
+        removeOrderedRows(target.cartId, ordered);
+        return order;
+    }
+
+    @Scheduled(fixedDelayString = "${cart.store.flush-interval:PT2S}",
+            initialDelayString = "${cart.store.flush-interval:PT2S}")
+    public void flushDirty() {
+        if (!flushLock.tryLock()) {
+            // a run is in progress and will be followed by the next tick
+            return;
+        }
+        try {
+            flushLocked();
+            evictIdle();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flusher.shutdown();
+        flushLock.lock();
+        try {
+            flushLocked();
+            if (!dirty.isEmpty()) {
+                log.error("{} carts could not be written on shutdown, their latest changes are lost", dirty.size());
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    public int dirtyCount() {
+        return dirty.size();
+    }
+
+    public int size() {
+        return byCustomer.size();
+    }
+
+    /**
+     * Carries a committed price or name change into the loaded carts holding
+     * the product. The database rows were repriced in the product's transaction.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (event.isCreate() || event.isDelete()) {
+            return;
+        }
+        Set<CartState> holders = byProduct.get(event.productId());
+        if (holders == null) {
+            return;
+        }
+        BigDecimal price = priceOf(event.current().price());
+        for (CartState state : List.copyOf(holders)) {
+            synchronized (state) {
+                Line line = state.lines.get(event.productId());
+                if (line != null && !state.evicted) {
+                    putLine(state, new Line(line.productId(), event.current().name(), price, line.quantity()));
+                }
+            }
+        }
+    }
+
+    // the sweeper leaves carts held here alone, their latest state may not be written yet
+    public boolean isLoaded(Long cartId) {
+        return byCart.containsKey(cartId);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("cart.store.carts", this, CartWriteBehindStore::size).register(registry);
+        Gauge.builder("cart.store.dirty", this, CartWriteBehindStore::dirtyCount).register(registry);
+    }
+
+    private <R> R withState(Long customerId, boolean create, Function<CartState, R> action) {
+        while (true) {
+            CartState state = byCustomer.get(customerId);
+            if (state == null) {
+                Cart cart = cartRepository.findWithItemsByCustomerId(customerId)
+                        .orElseGet(() -> create ? createEmptyCart(customerId) : null);
+                if (cart == null) {
+                    throw new RuntimeException("Cart not found");
+                }
+                state = load(cart);
+            }
+            synchronized (state) {
+                // lost a race with eviction, start over with the fresh copy
+                if (!state.evicted) {
+                    state.lastAccess = System.nanoTime();
+                    return action.apply(state);
+                }
+            }
+        }
+    }
+
+    private CartState load(Cart cart) {
+        CartState loaded = new CartState(cart.getId(), cart.getCustomer().getId(), cart.getCreatedAt(), cart.getUpdatedAt());
+        synchronized (loaded) {
+            // the totals start from the current prices, then move with every change
+            cart.getItems().values().forEach(item -> putLine(loaded, new Line(item.getProduct().getId(),
+                    item.getProduct().getName(), CartMapper.priceOf(item.getProduct()), item.getQuantity())));
+        }
+        // a concurrent loader may have won, keep its copy
+        CartState state = byCustomer.putIfAbsent(loaded.customerId, loaded);
+        if (state != null) {
+            synchronized (loaded) {
+                loaded.lines.keySet().forEach(productId -> unindex(loaded, productId));
+            }
+            return state;
+        }
+        byCart.put(loaded.cartId, loaded);
+        return loaded;
+    }
+
+    private Cart createEmptyCart(Long customerId) {
+        Customer customer = customerRepository.findById(customerId)
+                .orElseThrow(() -> new RuntimeException("Customer not found"));
+        // the row is written right away so the cart has an id to check out with
+        return cartRepository.save(Cart.builder()
+                .customer(customer)
+                .createdAt(LocalDateTime.now())
+                .updatedAt(LocalDateTime.now())
+                .build());
+    }
+
+    // caller holds the state's lock
+    private CartResponseDto changed(CartState state) {
+        state.updatedAt = LocalDateTime.now();
+        state.modCount++;
+        dirty.add(state);
+        if (dirty.size() >= flushThreshold) {
+            flushSoon();
+        }
+        return toResponse(state);
+    }
+
+    private void removeOrdered(CartState state, Map<Long, Integer> ordered) {
+        synchronized (state) {
+            ordered.forEach((productId, quantity) -> {
+                Line line = state.lines.get(productId);
+                if (line == null) {
+                    return;
+                }
+                // anything added after the order was placed stays in the cart
+                int left = line.quantity() - quantity;
+                if (left > 0) {
+                    putLine(state, line.withQuantity(left));
+                } else {
+                    removeLine(state, productId);
+                }
+            });
+            changed(state);
+        }
+        flushSoon();
+    }
+
+    private void removeOrderedRows(Long cartId, Map<Long, Integer> ordered) {
+        List<Map.Entry<Long, Integer>> lines = List.copyOf(ordered.entrySet());
+        // deletes first, a decremented line would otherwise match the delete as well
+        jdbcTemplate.batchUpdate(DELETE_ORDERED_SQL, lines, lines.size(), (ps, line) -> {
+            ps.setLong(1, cartId);
+            ps.setLong(2, line.getKey());
+            ps.setInt(3, line.getValue());
+        });
+        jdbcTemplate.batchUpdate(DECREMENT_ORDERED_SQL, lines, lines.size(), (ps, line) -> {
+            ps.setInt(1, line.getValue());
+            ps.setLong(2, cartId);
+            ps.setLong(3, line.getKey());
+            ps.setInt(4, line.getValue());
+        });
+    }
+
+    // caller holds the state's lock
+    private static void awaitFlush(CartState state) {
+        while (state.flushing) {
+            try {
+                state.wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for a cart write", e);
+            }
+        }
+    }
+
+    private void flushSoon() {
+        if (!flusher.isShutdown()) {
+            flusher.execute(this::flushDirty);
+        }
+    }
+
+    private void flushLocked() {
+        if (dirty.isEmpty()) {
+            return;
+        }
+        List<Snapshot> snapshots = new ArrayList<>();
+        for (CartState state : dirty) {
+            synchronized (state) {
+                // written by the run after its checkout ends, with the ordered lines gone
+                if (state.checkingOut) {
+                    continue;
+                }
+                state.flushing = true;
+                snapshots.add(new Snapshot(state, state.modCount, state.updatedAt, state.subtotal, state.totalQuantity,
+                        List.copyOf(state.lines.values())));
+            }
+        }
+        if (snapshots.isEmpty()) {
+            return;
+        }
+
+        long started = System.nanoTime();
+        boolean written = false;
+        try {
+            transactionTemplate.executeWithoutResult(status -> write(snapshots));
+            written = true;
+        } catch (RuntimeException e) {
+            log.warn("Writing {} carts failed, retrying on the next run", snapshots.size(), e);
+        } finally {
+            for (Snapshot snapshot : snapshots) {
+                synchronized (snapshot.state()) {
+                    snapshot.state().flushing = false;
+                    snapshot.state().notifyAll();
+                    if (written && snapshot.state().modCount == snapshot.modCount()) {
+                        dirty.remove(snapshot.state());
+                    }
+                }
+            }
+        }
+        if (!written) {
+            return;
+        }
+        log.debug("Wrote {} carts in {} ms", snapshots.size(), (System.nanoTime() - started) / 1_000_000);
+    }
+
+    private void write(List<Snapshot> snapshots) {
+        jdbcTemplate.batchUpdate(DELETE_ITEMS_SQL, snapshots, snapshots.size(),
+                (ps, snapshot) -> ps.setLong(1, snapshot.state().cartId));
+
+        List<Object[]> rows = new ArrayList<>();
+        for (Snapshot snapshot : snapshots) {
+            for (Line line : snapshot.lines()) {
+                rows.add(new Object[]{snapshot.state().cartId, line});
+            }
+        }
+        long[] ids = sequenceBlocks.next("cart_items_id_seq", rows.size());
+        int[] next = {0};
+        jdbcTemplate.batchUpdate(INSERT_ITEM_SQL, rows, Math.max(1, rows.size()), (ps, row) -> {
+            long cartId = (Long) row[0];
+            Line line = (Line) row[1];
+            ps.setLong(1, ids[next[0]++]);
+            ps.setLong(2, cartId);
+            ps.setLong(3, line.productId());
+            ps.setInt(4, line.quantity());
+            ps.setLong(5, line.productId());
+            ps.setLong(6, cartId);
+        });
+
+        jdbcTemplate.batchUpdate(TOUCH_CART_SQL, snapshots, snapshots.size(), (ps, snapshot) -> {
+            ps.setTimestamp(1, Timestamp.valueOf(snapshot.updatedAt()));
+            ps.setBigDecimal(2, snapshot.subtotal());
+            ps.setInt(3, snapshot.totalQuantity());
+            ps.setLong(4, snapshot.state().cartId);
+        });
+    }
+
+    private void evictIdle() {
+        long now = System.nanoTime();
+        for (CartState state : byCustomer.values()) {
+            synchronized (state) {
+                if (now - state.lastAccess > idleEvictionNanos && !dirty.contains(state) && !state.checkingOut) {
+                    state.evicted = true;
+                    byCustomer.remove(state.customerId, state);
+                    byCart.remove(state.cartId, state);
+                    state.lines.keySet().forEach(productId -> unindex(state, productId));
+                }
+            }
+        }
+    }
+
+    private CartResponseDto toResponse(CartState state) {
+        return CartResponseDto.builder()
+                .id(state.cartId)
+                .customerId(state.customerId)
+                .createdAt(state.createdAt)
+                .updatedAt(state.updatedAt)
+                .items(state.lines.values().stream()
+                        .map(line -> CartItemResponseDto.builder()
+                                .productId(line.productId())
+                                .productName(line.productName())
+                                .quantity(line.quantity())
+                                .unitPrice(line.unitPrice())
+                                .lineTotal(line.total())
+                                .build())
+                        .toList())
+                .totalQuantity(state.totalQuantity)
+                .subtotal(state.subtotal)
+                .build();
+    }
+
+    // every line change goes through putLine and removeLine, which keep the totals and byProduct in step
+
+    private void putLine(CartState state, Line line) {
+        Line old = state.lines.put(line.productId(), line);
+        if (old == null) {
+            byProduct.computeIfAbsent(line.productId(), id -> ConcurrentHashMap.newKeySet()).add(state);
+        } else {
+            state.totalQuantity -= old.quantity();
+            state.subtotal = state.subtotal.subtract(old.total());
+        }
+        state.totalQuantity += line.quantity();
+        state.subtotal = state.subtotal.add(line.total());
+    }
+
+    private void removeLine(CartState state, Long productId) {
+        Line old = state.lines.remove(productId);
+        if (old != null) {
+            state.totalQuantity -= old.quantity();
+            state.subtotal = state.subtotal.subtract(old.total());
+            unindex(state, productId);
+        }
+    }
+
+    private static BigDecimal priceOf(BigDecimal price) {
+        return price == null ? BigDecimal.ZERO : price;
+    }
+
+    private void unindex(CartState state, Long productId) {
+        byProduct.computeIfPresent(productId, (id, holders) -> {
+            holders.remove(state);
+            return holders.isEmpty() ? null : holders;
+        });
+    }
+
+    private static final class CartState {
+        private final Long cartId;
+        private final Long customerId;
+        private final LocalDateTime createdAt;
+        private LocalDateTime updatedAt;
+        // product id -> line, in the order the products were added
+        private final LinkedHashMap<Long, Line> lines = new LinkedHashMap<>();
+        private BigDecimal subtotal = BigDecimal.ZERO;
+        private int totalQuantity;
+        private long modCount;
+        private long lastAccess = System.nanoTime();
+        private boolean evicted;
+        // set from checkout until the order's transaction ends
+        private boolean checkingOut;
+        // set while a flush run writes a snapshot of this cart
+        private boolean flushing;
+
+        private CartState(Long cartId, Long customerId, LocalDateTime createdAt, LocalDateTime updatedAt) {
+            this.cartId = cartId;
+            this.customerId = customerId;
+            this.createdAt = createdAt;
+            this.updatedAt = updatedAt;
+        }
+    }
+
+    private record Line(Long productId, String productName, BigDecimal unitPrice, int quantity) {
+
+        private Line withQuantity(int newQuantity) {
+            return new Line(productId, productName, unitPrice, newQuantity);
+        }
+
+        private BigDecimal total() {
+            return unitPrice.multiply(BigDecimal.valueOf(quantity));
+        }
+    }
+
+    private record Snapshot(CartState state, long modCount, LocalDateTime updatedAt,
+                            BigDecimal subtotal, int totalQuantity, List<Line> lines) {
+    }
+}
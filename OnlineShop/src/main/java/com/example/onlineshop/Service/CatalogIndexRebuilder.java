@@ -0,0 +1,74 @@
+package com.example.onlineshop.Service;
+
+import com.example.onlineshop.event.ProductsImportedEvent;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Rebuilds the in-memory catalog views (search, autocomplete, facets) after a
+ * bulk import, on its own thread, so POST /api/products/bulk answers as soon
+ * as its batches are committed instead of after three full catalog scans.
+ *
+ * Until the rebuild finishes the views serve the catalog as it was before
+ * the import. Imports that finish while a rebuild is still waiting to start
+ * share it; one that finishes while a rebuild runs gets another one after it,
+ * since the running scan may have missed its rows.
+ */
+@Slf4j
+@Component
+public class CatalogIndexRebuilder {
+
+    private final ProductSearchService searchService;
+    private final ProductAutocompleteService autocompleteService;
+    private final ProductFacetService facetService;
+
+    private final AtomicBoolean queued = new AtomicBoolean();
+    private final ExecutorService rebuilder = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "catalog-index-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public CatalogIndexRebuilder(ProductSearchService searchService,
+                                 ProductAutocompleteService autocompleteService,
+                                 ProductFacetService facetService) {
+        this.searchService = searchService;
+        this.autocompleteService = autocompleteService;
+        this.facetService = facetService;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductsImported(ProductsImportedEvent event) {
+        if (queued.compareAndSet(false, true) && !rebuilder.isShutdown()) {
+            rebuilder.execute(this::rebuildAll);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuilder.shutdownNow();
+    }
+
+    private void rebuildAll() {
+        // from here on a new import needs a new run
+        queued.set(false);
+        rebuild("search index", searchService::rebuild);
+        rebuild("autocomplete index", autocompleteService::rebuildFromDatabase);
+        rebuild("facets", facetService::reconcile);
+    }
+
+    private static void rebuild(String view, Runnable rebuild) {
+        try {
+            rebuild.run();
+        } catch (RuntimeException e) {
+            // the other views still rebuild; this one catches up on its next scheduled run or import
+            log.warn("Rebuilding the product {} after an import failed", view, e);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.onlineshop.Service;
+
+import com.example.onlineshop.event.ProductChangedEvent;
+import com.example.onlineshop.event.ProductsImportedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Version of the catalog as a whole, moved forward after every committed
+ * product write and every bulk import.
+ *
+ * Catalog listings use it as their ETag, so a conditional GET is answered
+ * without touching the database. The start time is part of the tag, which
+ * keeps tags handed out before a restart from matching afterwards.
+ */
+@Component
+public class CatalogVersion {
+
+    private final long epoch = System.currentTimeMillis();
+    private long counter;
+    private long lastModified = epoch;
+
+    public synchronized String etag() {
+        return "\"c" + epoch + "-" + counter + "\"";
+    }
+
+    public synchronized long lastModified() {
+        return lastModified;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        bump();
+    }
+
+    @EventListener(ProductsImportedEvent.class)
+    public void onProductsImported() {
+        bump();
+    }
+
+    private synchronized void bump() {
+        counter++;
+        // Last-Modified has second precision, never let it stand still or go back
+        lastModified = Math.max(System.currentTimeMillis(), lastModified + 1000);
+    }
+}
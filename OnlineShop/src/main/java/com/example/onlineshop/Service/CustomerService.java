@@ -6,6 +6,7 @@ import com.example.onlineshop.Entity.Customer;
 import com.example.onlineshop.Util.CustomerMapper;
 import com.example.onlineshop.Repository.CustomerRepository;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.stream.Collectors;
@@ -21,23 +22,27 @@ public class CustomerService {
         this.mapper = mapper;
     }
 
+    @Transactional
     public CustomerResponseDto create(CustomerRequestDto dto) {
         Customer saved = repository.save(mapper.toEntity(dto));
         return mapper.toResponse(saved);
     }
 
+    @Transactional(readOnly = true)
     public List<CustomerResponseDto> getAll() {
         return repository.findAll().stream()
                 .map(mapper::toResponse)
                 .collect(Collectors.toList());
     }
 
+    @Transactional(readOnly = true)
     public CustomerResponseDto getById(Long id) {
         return repository.findById(id)
                 .map(mapper::toResponse)
                 .orElseThrow(() -> new RuntimeException("Customer not found"));
     }
 
+    @Transactional
     public CustomerResponseDto update(Long id, CustomerRequestDto dto) {
         Customer entity = repository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Customer not found"));
@@ -45,6 +50,7 @@ public class CustomerService {
         return mapper.toResponse(repository.save(entity));
     }
 
+    @Transactional
     public void delete(Long id) {
         repository.deleteById(id);
     }
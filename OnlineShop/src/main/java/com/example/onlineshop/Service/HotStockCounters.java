@@ -0,0 +1,350 @@
+package com.example.onlineshop.Service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory stock for flash sale products, so buyers of one hot product do not
+ * all queue on its row lock.
+ *
+ * Each product in stock.hot.product-ids gets stock.hot.stripes counters. A
+ * buyer decrements one of them with a compare-and-set and never touches the
+ * database. A counter that runs dry is refilled with up to stock.hot.allotment
+ * units taken from the product's row in hot_stock_allotments, one refill per
+ * product at a time, in its own short transaction. The ledger never hands out
+ * more than products.stock_quantity minus what it already handed out, so the
+ * counters together can never sell more than the stock.
+ *
+ * Sales count once the order commits; a rolled back order puts its units back
+ * into the counter. Every stock.hot.reconcile-interval the counted sales are
+ * taken off products.stock_quantity and off the ledger in one batch, so the
+ * column holds the stock as of the last run.
+ *
+ * A clean shutdown reconciles and gives the unsold units back. After a crash
+ * the ledger still holds an allotment; on startup the sales recorded in
+ * order_items since the last reconciliation, widened by
+ * stock.hot.recovery-grace for orders still committing at the time, are taken
+ * off the stock and the allotment is cleared. Counting too many sales there
+ * leaves some units unsold, it never sells one twice.
+ *
+ * Assumes a single application instance and that a hot product's stock is
+ * only ever raised while the sale runs: lowering it below what the counters
+ * already hold is not noticed until they run dry.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "stock.hot.enabled", havingValue = "true")
+public class HotStockCounters implements MeterBinder {
+
+    private static final String LOCK_ALLOTMENT_SQL =
+            "SELECT allotted FROM hot_stock_allotments WHERE product_id = ? FOR UPDATE";
+    private static final String STOCK_SQL = "SELECT stock_quantity FROM products WHERE id = ?";
+    private static final String ALLOT_SQL =
+            "UPDATE hot_stock_allotments SET allotted = allotted + ? WHERE product_id = ?";
+    private static final String RECONCILE_ALLOTMENT_SQL =
+            "UPDATE hot_stock_allotments SET allotted = allotted - ?, reconciled_at = ? WHERE product_id = ?";
+    // stock-only, like StockReservations: no version bump, cached product bodies stay valid
+    private static final String RECONCILE_STOCK_SQL = "UPDATE products SET stock_quantity = stock_quantity - ? WHERE id = ?";
+    private static final String PENDING_SQL =
+            "SELECT product_id, allotted, reconciled_at FROM hot_stock_allotments WHERE allotted > 0";
+    private static final String SOLD_SINCE_SQL =
+            "SELECT COALESCE(SUM(oi.quantity), 0) FROM order_items oi JOIN orders o ON o.id = oi.order_id "
+                    + "WHERE oi.product_id = ? AND o.created_at >= ?";
+    private static final String RECOVER_STOCK_SQL =
+            "UPDATE products SET stock_quantity = GREATEST(stock_quantity - ?, 0) WHERE id = ?";
+    private static final String CLEAR_LEDGER_SQL = "DELETE FROM hot_stock_allotments";
+    private static final String OPEN_ALLOTMENT_SQL =
+            "INSERT INTO hot_stock_allotments (product_id, allotted, reconciled_at) "
+                    + "SELECT id, 0, ? FROM products WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    // refills commit on their own, whatever becomes of the order that needed them
+    private final TransactionTemplate refillTransaction;
+    private final Set<Long> productIds;
+    private final int stripes;
+    private final int allotment;
+    private final Duration recoveryGrace;
+
+    private volatile Map<Long, HotStock> stocks = Map.of();
+
+    private final LongAdder unitsTaken = new LongAdder();
+    private final LongAdder refills = new LongAdder();
+    private final LongAdder unitsReconciled = new LongAdder();
+
+    public HotStockCounters(JdbcTemplate jdbcTemplate,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${stock.hot.product-ids:}") Set<Long> productIds,
+                            @Value("${stock.hot.stripes:8}") int stripes,
+                            @Value("${stock.hot.allotment:20}") int allotment,
+                            @Value("${stock.hot.recovery-grace:PT1M}") Duration recoveryGrace) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.refillTransaction = new TransactionTemplate(transactionManager);
+        this.refillTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.productIds = new TreeSet<>(productIds);
+        this.stripes = stripes;
+        this.allotment = allotment;
+        this.recoveryGrace = recoveryGrace;
+    }
+
+    /**
+     * Settles what a previous run left in the ledger and opens a fresh
+     * allotment for every configured product. Runs before the application
+     * takes traffic.
+     */
+    @PostConstruct
+    public void recover() {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        Map<Long, HotStock> opened = new LinkedHashMap<>();
+        transactionTemplate.executeWithoutResult(status -> {
+            List<Map<String, Object>> pending = jdbcTemplate.queryForList(PENDING_SQL);
+            for (Map<String, Object> row : pending) {
+                long productId = ((Number) row.get("product_id")).longValue();
+                LocalDateTime since = ((Timestamp) row.get("reconciled_at")).toLocalDateTime().minus(recoveryGrace);
+                int sold = jdbcTemplate.queryForObject(SOLD_SINCE_SQL, Integer.class, productId, Timestamp.valueOf(since));
+                jdbcTemplate.update(RECOVER_STOCK_SQL, sold, productId);
+                log.warn("Recovered hot stock of product {}: {} units allotted, {} sold since {}",
+                        productId, row.get("allotted"), sold, since);
+            }
+            jdbcTemplate.update(CLEAR_LEDGER_SQL);
+            for (Long productId : productIds) {
+                if (jdbcTemplate.update(OPEN_ALLOTMENT_SQL, now, productId) == 1) {
+                    opened.put(productId, new HotStock(productId, stripes));
+                } else {
+                    log.warn("Hot stock product {} does not exist, ignoring it", productId);
+                }
+            }
+        });
+        stocks = Map.copyOf(opened);
+    }
+
+    public boolean isHot(Long productId) {
+        return stocks.containsKey(productId);
+    }
+
+    /**
+     * Takes quantity units of a hot product for the current transaction, or
+     * returns false if its stock cannot cover them. The units go back if the
+     * transaction rolls back.
+     */
+    public boolean take(Long productId, int quantity) {
+        HotStock stock = stocks.get(productId);
+        int home = (int) (Thread.currentThread().getId() % stripes);
+        if (!stock.take(home, quantity) && !refillAndTake(stock, home, quantity)) {
+            return false;
+        }
+        unitsTaken.add(quantity);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    stock.counters[home].addAndGet(quantity);
+                } else {
+                    // counted as sold when the outcome is unknown, a unit is never sold twice
+                    stock.sold.add(quantity);
+                }
+            }
+        });
+        return true;
+    }
+
+    // pools what the other stripes hold and tops it up from the ledger
+    private boolean refillAndTake(HotStock stock, int home, int quantity) {
+        stock.refill.lock();
+        try {
+            if (stock.take(home, quantity)) {
+                return true;
+            }
+            int pooled = 0;
+            for (AtomicInteger counter : stock.counters) {
+                pooled += counter.getAndSet(0);
+            }
+            if (pooled < quantity && !stock.drained) {
+                int wanted = Math.max(allotment, quantity - pooled);
+                int granted = refillTransaction.execute(status -> allot(stock.productId, wanted));
+                refills.increment();
+                stock.drained = granted < wanted;
+                pooled += granted;
+            }
+            if (pooled < quantity) {
+                stock.counters[home].addAndGet(pooled);
+                return false;
+            }
+            stock.counters[home].addAndGet(pooled - quantity);
+            return true;
+        } finally {
+            stock.refill.unlock();
+        }
+    }
+
+    private int allot(Long productId, int wanted) {
+        int allotted = jdbcTemplate.queryForObject(LOCK_ALLOTMENT_SQL, Integer.class, productId);
+        Integer stockQuantity = jdbcTemplate.queryForObject(STOCK_SQL, Integer.class, productId);
+        int granted = Math.min(wanted, Math.max(0, (stockQuantity == null ? 0 : stockQuantity) - allotted));
+        if (granted > 0) {
+            jdbcTemplate.update(ALLOT_SQL, granted, productId);
+        }
+        return granted;
+    }
+
+    /**
+     * Takes the sales counted since the last run off the products' stock and
+     * off the ledger, in one transaction.
+     */
+    @Scheduled(fixedDelayString = "${stock.hot.reconcile-interval:PT5S}",
+            initialDelayString = "${stock.hot.reconcile-interval:PT5S}")
+    public void reconcile() {
+        settle(false);
+    }
+
+    /**
+     * Final reconciliation on a clean shutdown: the unsold units go back too,
+     * so the next start finds nothing to recover.
+     */
+    @PreDestroy
+    public void release() {
+        settle(true);
+    }
+
+    private void settle(boolean releaseUnsold) {
+        Map<HotStock, int[]> drained = new LinkedHashMap<>();
+        for (HotStock stock : stocks.values()) {
+            stock.refill.lock();
+            try {
+                int sold = (int) stock.sold.sumThenReset();
+                int unsold = 0;
+                if (releaseUnsold) {
+                    for (AtomicInteger counter : stock.counters) {
+                        unsold += counter.getAndSet(0);
+                    }
+                }
+                drained.put(stock, new int[]{sold, unsold});
+                // a restock since the last refill is picked up on the next one
+                stock.drained = false;
+            } finally {
+                stock.refill.unlock();
+            }
+        }
+        if (drained.isEmpty()) {
+            return;
+        }
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> allotmentRows = new ArrayList<>();
+        List<Object[]> stockRows = new ArrayList<>();
+        drained.forEach((stock, units) -> {
+            allotmentRows.add(new Object[]{units[0] + units[1], now, stock.productId});
+            if (units[0] > 0) {
+                stockRows.add(new Object[]{units[0], stock.productId});
+            }
+        });
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.batchUpdate(RECONCILE_ALLOTMENT_SQL, allotmentRows);
+                if (!stockRows.isEmpty()) {
+                    jdbcTemplate.batchUpdate(RECONCILE_STOCK_SQL, stockRows);
+                }
+            });
+        } catch (RuntimeException e) {
+            // nothing was written, the next run settles these units again
+            drained.forEach((stock, units) -> {
+                stock.sold.add(units[0]);
+                stock.counters[0].addAndGet(units[1]);
+            });
+            throw e;
+        }
+        drained.values().forEach(units -> unitsReconciled.add(units[0]));
+    }
+
+    /**
+     * Units a hot product's counters can still sell without a refill.
+     */
+    public int available(Long productId) {
+        int available = 0;
+        for (AtomicInteger counter : stocks.get(productId).counters) {
+            available += counter.get();
+        }
+        return available;
+    }
+
+    public long unitsTakenCount() {
+        return unitsTaken.sum();
+    }
+
+    public long refillCount() {
+        return refills.sum();
+    }
+
+    public long unitsReconciledCount() {
+        return unitsReconciled.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("stock.hot.units.taken", this, HotStockCounters::unitsTakenCount).register(registry);
+        FunctionCounter.builder("stock.hot.refills", this, HotStockCounters::refillCount).register(registry);
+        FunctionCounter.builder("stock.hot.units.reconciled", this, HotStockCounters::unitsReconciledCount)
+                .register(registry);
+    }
+
+    private static final class HotStock {
+        final long productId;
+        final AtomicInteger[] counters;
+        // committed sales not reconciled yet
+        final LongAdder sold = new LongAdder();
+        final ReentrantLock refill = new ReentrantLock();
+        // the last refill got less than it asked for, wait for a reconciliation before asking again
+        volatile boolean drained;
+
+        HotStock(long productId, int stripes) {
+            this.productId = productId;
+            this.counters = new AtomicInteger[stripes];
+            for (int i = 0; i < stripes; i++) {
+                counters[i] = new AtomicInteger();
+            }
+        }
+
+        // lock free: the home stripe first, then the others
+        boolean take(int home, int quantity) {
+            for (int i = 0; i < counters.length; i++) {
+                AtomicInteger counter = counters[(home + i) % counters.length];
+                int current = counter.get();
+                while (current >= quantity) {
+                    if (counter.compareAndSet(current, current - quantity)) {
+                        return true;
+                    }
+                    current = counter.get();
+                }
+            }
+            return false;
+        }
+    }
+}
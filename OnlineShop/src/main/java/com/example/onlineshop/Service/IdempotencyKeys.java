@@ -0,0 +1,329 @@
+package com.example.onlineshop.Service;
+
+import com.example.onlineshop.exception.InvalidRequestException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Makes a request safe to retry: a request sent again with the same
+ * Idempotency-Key gets the response of the first one instead of running again.
+ *
+ * The response is stored in idempotency_keys in the same transaction as the
+ * request's own changes, through record, so an order and its key commit or
+ * roll back together. The most recent idempotency.cache.max-size responses
+ * are also kept in an in-memory LRU, so a retry storm does not even reach the
+ * database. While the first request with a key is still running, repeats
+ * within this instance wait for it and share its outcome. A repeat that
+ * reaches another instance runs until it stores its response, where the
+ * table's primary key makes it wait for the first transaction and then fail,
+ * or fails earlier on what the first request changed; either way it rolls
+ * back and replays the stored response instead.
+ *
+ * Only successful responses are stored: a request that failed can be retried
+ * with the same key. A key sent again with a different request body is
+ * refused. Keys expire after idempotency.ttl and are purged in batches.
+ */
+@Slf4j
+@Component
+public class IdempotencyKeys implements MeterBinder {
+
+    private static final int MAX_KEY_LENGTH = 100;
+
+    private static final String FIND_SQL =
+            "SELECT fingerprint, response, expires_at FROM idempotency_keys WHERE scope = ? AND idem_key = ?";
+    private static final String RECORD_SQL =
+            "INSERT INTO idempotency_keys (scope, idem_key, fingerprint, response, created_at, expires_at) "
+                    + "VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String DELETE_EXPIRED_KEY_SQL =
+            "DELETE FROM idempotency_keys WHERE scope = ? AND idem_key = ? AND expires_at < ?";
+    private static final String SELECT_EXPIRED_SQL =
+            "SELECT scope, idem_key FROM idempotency_keys WHERE expires_at < ? ORDER BY expires_at LIMIT ?";
+    private static final String DELETE_SQL = "DELETE FROM idempotency_keys WHERE scope = ? AND idem_key = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final Duration ttl;
+    private final int purgeBatchSize;
+
+    private final LinkedHashMap<Slot, Stored> completed;
+    private final ConcurrentHashMap<Slot, InFlight> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder replays = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder purged = new LongAdder();
+
+    public IdempotencyKeys(JdbcTemplate jdbcTemplate,
+                           TransactionTemplate transactionTemplate,
+                           ObjectMapper objectMapper,
+                           @Value("${idempotency.ttl:P1D}") Duration ttl,
+                           @Value("${idempotency.cache.max-size:10000}") int maxSize,
+                           @Value("${idempotency.purge.batch-size:1000}") int purgeBatchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.ttl = ttl;
+        this.purgeBatchSize = purgeBatchSize;
+        this.completed = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Slot, Stored> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Runs action once per scope and key. The action must run in a transaction
+     * of its own and pass its result through record inside it. A null key
+     * runs the action with a null claim, which record lets through.
+     */
+    public <T> T execute(String scope, String key, Object request, Class<T> type, Function<Claim, T> action) {
+        if (key == null) {
+            return action.apply(null);
+        }
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new InvalidRequestException("Idempotency-Key must be 1 to " + MAX_KEY_LENGTH + " characters");
+        }
+        Claim claim = new Claim(scope, key, fingerprint(request));
+        Slot slot = new Slot(scope, key);
+
+        String cached = cached(slot, claim);
+        if (cached != null) {
+            replays.increment();
+            return read(cached, type);
+        }
+
+        InFlight mine = new InFlight(claim.fingerprint(), new CompletableFuture<>());
+        InFlight running = inFlight.putIfAbsent(slot, mine);
+        if (running != null) {
+            checkFingerprint(running.fingerprint(), claim);
+            coalesced.increment();
+            return read(await(running.response()), type);
+        }
+        try {
+            String response = runOnce(slot, claim, type, action);
+            remember(slot, claim.fingerprint(), response);
+            mine.response().complete(response);
+            return read(response, type);
+        } catch (RuntimeException e) {
+            mine.response().completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(slot, mine);
+        }
+    }
+
+    /**
+     * The response another request already stored for the claim, or null. An
+     * action that retries in a loop of its own calls this at the start of
+     * every attempt, so an attempt that follows a commit by another instance
+     * replays that response instead of running again.
+     */
+    public <T> T find(Claim claim, Class<T> type) {
+        if (claim == null) {
+            return null;
+        }
+        String stored = stored(new Slot(claim.scope(), claim.key()), claim);
+        if (stored == null) {
+            return null;
+        }
+        replays.increment();
+        return read(stored, type);
+    }
+
+    /**
+     * Stores the response for a claim in the caller's transaction.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public <T> T record(Claim claim, T response) {
+        if (claim == null) {
+            return response;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        jdbcTemplate.update(RECORD_SQL, claim.scope(), claim.key(), claim.fingerprint(), write(response),
+                Timestamp.valueOf(now), Timestamp.valueOf(now.plus(ttl)));
+        return response;
+    }
+
+    @Scheduled(fixedDelayString = "${idempotency.purge.interval:PT10M}",
+            initialDelayString = "${idempotency.purge.interval:PT10M}")
+    public void purge() {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        int total = 0;
+        int deleted;
+        do {
+            deleted = transactionTemplate.execute(status -> {
+                List<Object[]> keys = jdbcTemplate.query(SELECT_EXPIRED_SQL,
+                        (rs, i) -> new Object[]{rs.getString(1), rs.getString(2)}, now, purgeBatchSize);
+                if (!keys.isEmpty()) {
+                    jdbcTemplate.batchUpdate(DELETE_SQL, keys);
+                }
+                return keys.size();
+            });
+            purged.add(deleted);
+            total += deleted;
+        } while (deleted == purgeBatchSize);
+        if (total > 0) {
+            log.info("Purged {} expired idempotency keys", total);
+        }
+    }
+
+    public long replayCount() {
+        return replays.sum();
+    }
+
+    public long coalescedCount() {
+        return coalesced.sum();
+    }
+
+    public long purgedCount() {
+        return purged.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("idempotency.replays", this, IdempotencyKeys::replayCount).register(registry);
+        FunctionCounter.builder("idempotency.coalesced", this, IdempotencyKeys::coalescedCount).register(registry);
+        FunctionCounter.builder("idempotency.purged", this, IdempotencyKeys::purgedCount).register(registry);
+    }
+
+    private <T> String runOnce(Slot slot, Claim claim, Class<T> type, Function<Claim, T> action) {
+        String stored = stored(slot, claim);
+        if (stored != null) {
+            replays.increment();
+            return stored;
+        }
+        try {
+            return write(action.apply(claim));
+        } catch (RuntimeException e) {
+            // another instance stored its response first and this attempt rolled back, on
+            // the key's primary key or on what the first request changed (an emptied cart)
+            stored = stored(slot, claim);
+            if (stored == null) {
+                throw e;
+            }
+            replays.increment();
+            return stored;
+        }
+    }
+
+    private synchronized String cached(Slot slot, Claim claim) {
+        Stored stored = completed.get(slot);
+        if (stored == null) {
+            return null;
+        }
+        if (stored.expiresAt().isBefore(LocalDateTime.now())) {
+            completed.remove(slot);
+            return null;
+        }
+        checkFingerprint(stored.fingerprint(), claim);
+        return stored.response();
+    }
+
+    private synchronized void remember(Slot slot, String fingerprint, String response) {
+        completed.put(slot, new Stored(fingerprint, response, LocalDateTime.now().plus(ttl)));
+    }
+
+    // the stored response, or null once it is missing or expired; an expired row is removed to free the key
+    private String stored(Slot slot, Claim claim) {
+        List<Stored> rows = jdbcTemplate.query(FIND_SQL, (rs, i) -> new Stored(
+                rs.getString("fingerprint"),
+                rs.getString("response"),
+                rs.getTimestamp("expires_at").toLocalDateTime()), slot.scope(), slot.key());
+        if (rows.isEmpty()) {
+            return null;
+        }
+        Stored stored = rows.get(0);
+        LocalDateTime now = LocalDateTime.now();
+        if (stored.expiresAt().isBefore(now)) {
+            jdbcTemplate.update(DELETE_EXPIRED_KEY_SQL, slot.scope(), slot.key(), Timestamp.valueOf(now));
+            return null;
+        }
+        checkFingerprint(stored.fingerprint(), claim);
+        remember(slot, stored.fingerprint(), stored.response());
+        return stored.response();
+    }
+
+    private static void checkFingerprint(String fingerprint, Claim claim) {
+        if (!fingerprint.equals(claim.fingerprint())) {
+            throw new InvalidRequestException("Idempotency-Key " + claim.key() + " was already used for a different request");
+        }
+    }
+
+    private static String await(CompletableFuture<String> response) {
+        try {
+            return response.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private String fingerprint(Object request) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(request));
+            return HexFormat.of().formatHex(digest);
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Could not fingerprint request", e);
+        }
+    }
+
+    private String write(Object response) {
+        try {
+            return objectMapper.writeValueAsString(response);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize response", e);
+        }
+    }
+
+    private <T> T read(String response, Class<T> type) {
+        try {
+            return objectMapper.readValue(response, type);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not read stored response", e);
+        }
+    }
+
+    /**
+     * A key taken by a running request, passed on to record.
+     */
+    public record Claim(String scope, String key, String fingerprint) {
+    }
+
+    private record Slot(String scope, String key) {
+    }
+
+    private record Stored(String fingerprint, String response, LocalDateTime expiresAt) {
+    }
+
+    private record InFlight(String fingerprint, CompletableFuture<String> response) {
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.onlineshop.Service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Confirms a placed order to its customer, once. The order is stamped in the
+ * same statement that checks it, so a redelivered event finds it stamped and
+ * sends nothing. There is no mail gateway yet, the confirmation is logged.
+ */
+@Slf4j
+@Component
+public class OrderConfirmationNotifier implements OrderPlacedHandler {
+
+    private static final String MARK_SENT_SQL =
+            "UPDATE orders SET confirmation_sent_at = ? WHERE id = ? AND confirmation_sent_at IS NULL";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final LongAdder sent = new LongAdder();
+
+    public OrderConfirmationNotifier(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void onOrderPlaced(Long orderId) {
+        if (jdbcTemplate.update(MARK_SENT_SQL, Timestamp.valueOf(LocalDateTime.now()), orderId) == 1) {
+            sent.increment();
+            log.info("Order {} confirmed to its customer", orderId);
+        }
+    }
+
+    public long sentCount() {
+        return sent.sum();
+    }
+}
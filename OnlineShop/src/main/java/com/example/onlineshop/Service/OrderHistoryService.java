@@ -0,0 +1,76 @@
+package com.example.onlineshop.Service;
+
+import com.example.onlineshop.Repository.OrderItemRepository;
+import com.example.onlineshop.Repository.OrderItemRepository.OrderLine;
+import com.example.onlineshop.Repository.OrderRepository;
+import com.example.onlineshop.Repository.OrderRepository.OrderSummary;
+import com.example.onlineshop.Util.OrderCursor;
+import com.example.onlineshop.Util.OrderMapper;
+import com.example.onlineshop.dto.OrderPageResponseDto;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * A customer's order history, newest first, one keyset page at a time.
+ *
+ * A page is two queries whatever its size: the orders as projections off the
+ * (customer_id, created_at, id) index, then the lines of exactly those orders.
+ * No entity is loaded, so nothing lands in the persistence context.
+ */
+@Service
+public class OrderHistoryService {
+
+    private final OrderRepository orderRepository;
+    private final OrderItemRepository orderItemRepository;
+    private final OrderMapper mapper;
+    private final int defaultPageSize;
+    private final int maxPageSize;
+
+    public OrderHistoryService(OrderRepository orderRepository,
+                               OrderItemRepository orderItemRepository,
+                               OrderMapper mapper,
+                               @Value("${order.page.default-size:20}") int defaultPageSize,
+                               @Value("${order.page.max-size:100}") int maxPageSize) {
+        this.orderRepository = orderRepository;
+        this.orderItemRepository = orderItemRepository;
+        this.mapper = mapper;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+    }
+
+    @Transactional(readOnly = true)
+    public OrderPageResponseDto getOrderPage(Long customerId, String cursor, Integer size) {
+        int pageSize = size == null ? defaultPageSize : Math.max(1, Math.min(size, maxPageSize));
+        // one extra row tells us whether there is a next page
+        PageRequest limit = PageRequest.of(0, pageSize + 1);
+
+        List<OrderSummary> rows;
+        if (cursor == null) {
+            rows = orderRepository.findFirstHistoryPage(customerId, limit);
+        } else {
+            OrderCursor after = OrderCursor.decode(cursor);
+            rows = orderRepository.findHistoryPageAfter(customerId, after.createdAt(), after.id(), limit);
+        }
+
+        boolean hasMore = rows.size() > pageSize;
+        List<OrderSummary> page = hasMore ? rows.subList(0, pageSize) : rows;
+        Map<Long, List<OrderLine>> lines = page.isEmpty()
+                ? Map.of()
+                : orderItemRepository.findLinesByOrderIds(page.stream().map(OrderSummary::getId).toList()).stream()
+                        .collect(Collectors.groupingBy(OrderLine::getOrderId));
+
+        OrderSummary last = hasMore ? page.get(pageSize - 1) : null;
+        return OrderPageResponseDto.builder()
+                .items(page.stream()
+                        .map(order -> mapper.toResponse(order, lines.getOrDefault(order.getId(), List.of())))
+                        .toList())
+                .nextCursor(last == null ? null : new OrderCursor(last.getCreatedAt(), last.getId()).encode())
+                .build();
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.onlineshop.Service;
+
+import com.example.onlineshop.Entity.Order;
+import com.example.onlineshop.Entity.OrderOutboxEvent;
+import com.example.onlineshop.Repository.OrderOutboxRepository;
+import com.example.onlineshop.exception.OrderBacklogException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Acceptance side of the post-order pipeline: placing an order only writes
+ * the order and one order_outbox row in the same transaction, and
+ * OrderOutboxDispatcher runs the OrderPlacedHandlers later, off the request
+ * thread.
+ *
+ * When more than order.outbox.max-backlog events wait, new orders are refused
+ * with 503 and a Retry-After instead of piling up work the workers cannot
+ * keep up with. The backlog figure is the dispatcher's count from its last
+ * poll, so admitting an order costs no query.
+ */
+@Component
+public class OrderOutbox implements MeterBinder {
+
+    private final OrderOutboxRepository repository;
+    private final long maxBacklog;
+    private final long retryAfterSeconds;
+
+    private volatile long depth;
+    // created_at of the oldest waiting event, null when none waits
+    private volatile LocalDateTime oldest;
+
+    private final LongAdder rejected = new LongAdder();
+
+    public OrderOutbox(OrderOutboxRepository repository,
+                       @Value("${order.outbox.max-backlog:10000}") long maxBacklog,
+                       @Value("${order.outbox.retry-after:PT5S}") Duration retryAfter) {
+        this.repository = repository;
+        this.maxBacklog = maxBacklog;
+        this.retryAfterSeconds = Math.max(1, retryAfter.toSeconds());
+    }
+
+    /**
+     * Throws OrderBacklogException while the backlog is full. Called before any
+     * work is done for a new order.
+     */
+    public void admit() {
+        if (depth >= maxBacklog) {
+            rejected.increment();
+            throw new OrderBacklogException(retryAfterSeconds);
+        }
+    }
+
+    /**
+     * Queues the post-order work for a saved order, in the order's transaction.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void append(Order order) {
+        LocalDateTime now = LocalDateTime.now();
+        repository.save(OrderOutboxEvent.builder()
+                .orderId(order.getId())
+                .createdAt(now)
+                .nextAttemptAt(now)
+                .build());
+    }
+
+    void observe(long depth, LocalDateTime oldest) {
+        this.depth = depth;
+        this.oldest = oldest;
+    }
+
+    public long depth() {
+        return depth;
+    }
+
+    /**
+     * Seconds the oldest waiting event has waited, 0 when none waits.
+     */
+    public double lagSeconds() {
+        LocalDateTime since = oldest;
+        return since == null ? 0 : Math.max(0, Duration.between(since, LocalDateTime.now()).toMillis() / 1000.0);
+    }
+
+    public long rejectedCount() {
+        return rejected.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("order.outbox.depth", this, OrderOutbox::depth).register(registry);
+        Gauge.builder("order.outbox.lag", this, OrderOutbox::lagSeconds).baseUnit("seconds").register(registry);
+        FunctionCounter.builder("order.outbox.rejected", this, OrderOutbox::rejectedCount).register(registry);
+    }
+}
@@ -0,0 +1,226 @@
+package com.example.onlineshop.Service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Drains order_outbox: runs every OrderPlacedHandler for each placed order on
+ * a bounded pool of order.outbox.workers threads.
+ *
+ * Every poll claims due events order.outbox.batch-size at a time with SELECT
+ * ... FOR UPDATE SKIP LOCKED and leases them for order.outbox.lease by moving
+ * their due time, so another poll or instance leaves them alone. A claimed
+ * batch is one task on the pool, whose queue holds at most
+ * order.outbox.queue-capacity batches; once it is full the poll stops
+ * claiming and the events wait in the table.
+ *
+ * Each event runs its handlers and is deleted in one transaction. A failure
+ * rolls that back and schedules the event again after a delay that doubles
+ * from order.outbox.retry-delay up to order.outbox.max-retry-delay. An event
+ * whose worker died with the application is claimed again once its lease
+ * runs out. Handlers therefore see an event at least once, and possibly more.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "order.outbox.dispatcher.enabled", havingValue = "true", matchIfMissing = true)
+public class OrderOutboxDispatcher implements MeterBinder {
+
+    private static final String CLAIM_SQL =
+            "SELECT id, order_id, created_at, attempts FROM order_outbox WHERE next_attempt_at <= ? "
+                    + "ORDER BY next_attempt_at, id LIMIT ? FOR UPDATE SKIP LOCKED";
+    private static final String LEASE_SQL = "UPDATE order_outbox SET next_attempt_at = :until WHERE id IN (:ids)";
+    private static final String DONE_SQL = "DELETE FROM order_outbox WHERE id = ?";
+    private static final String RETRY_SQL =
+            "UPDATE order_outbox SET attempts = attempts + 1, next_attempt_at = ?, last_error = ? WHERE id = ?";
+    private static final String BACKLOG_SQL = "SELECT COUNT(*) AS depth, MIN(created_at) AS oldest FROM order_outbox";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final OrderOutbox outbox;
+    private final List<OrderPlacedHandler> handlers;
+    private final int batchSize;
+    private final Duration lease;
+    private final Duration retryDelay;
+    private final Duration maxRetryDelay;
+    private final ThreadPoolExecutor workers;
+
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder saturated = new LongAdder();
+    // created_at to done, per processed event
+    private final LongAdder deliveryNanos = new LongAdder();
+
+    public OrderOutboxDispatcher(JdbcTemplate jdbcTemplate,
+                                 TransactionTemplate transactionTemplate,
+                                 OrderOutbox outbox,
+                                 List<OrderPlacedHandler> handlers,
+                                 @Value("${order.outbox.workers:4}") int workers,
+                                 @Value("${order.outbox.queue-capacity:8}") int queueCapacity,
+                                 @Value("${order.outbox.batch-size:100}") int batchSize,
+                                 @Value("${order.outbox.lease:PT1M}") Duration lease,
+                                 @Value("${order.outbox.retry-delay:PT1S}") Duration retryDelay,
+                                 @Value("${order.outbox.max-retry-delay:PT5M}") Duration maxRetryDelay) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.transactionTemplate = transactionTemplate;
+        this.outbox = outbox;
+        this.handlers = List.copyOf(handlers);
+        this.batchSize = batchSize;
+        this.lease = lease;
+        this.retryDelay = retryDelay;
+        this.maxRetryDelay = maxRetryDelay;
+        AtomicInteger threads = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), task -> {
+                    Thread thread = new Thread(task, "order-outbox-" + threads.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @Scheduled(fixedDelayString = "${order.outbox.poll-interval:PT0.5S}")
+    public void poll() {
+        refreshBacklog();
+        while (workers.getQueue().remainingCapacity() > 0) {
+            List<Event> batch = transactionTemplate.execute(status -> claim());
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                workers.execute(() -> process(batch));
+            } catch (RejectedExecutionException e) {
+                // the queue filled up since the check, the lease runs out and the batch is claimed again
+                saturated.increment();
+                return;
+            }
+            if (batch.size() < batchSize) {
+                return;
+            }
+        }
+        saturated.increment();
+    }
+
+    /**
+     * Counts the waiting events for the backlog check and the depth and lag gauges.
+     */
+    public void refreshBacklog() {
+        Map<String, Object> backlog = jdbcTemplate.queryForMap(BACKLOG_SQL);
+        Timestamp oldest = (Timestamp) backlog.get("oldest");
+        outbox.observe(((Number) backlog.get("depth")).longValue(), oldest == null ? null : oldest.toLocalDateTime());
+    }
+
+    /**
+     * True once no batch is queued or running.
+     */
+    public boolean isIdle() {
+        return workers.getCompletedTaskCount() == workers.getTaskCount();
+    }
+
+    public long processedCount() {
+        return processed.sum();
+    }
+
+    public long failureCount() {
+        return failures.sum();
+    }
+
+    public long saturatedCount() {
+        return saturated.sum();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("order.outbox.processed", this, OrderOutboxDispatcher::processedCount).register(registry);
+        FunctionCounter.builder("order.outbox.failures", this, OrderOutboxDispatcher::failureCount).register(registry);
+        FunctionCounter.builder("order.outbox.saturated", this, OrderOutboxDispatcher::saturatedCount).register(registry);
+        FunctionTimer.builder("order.outbox.delivery", this,
+                        dispatcher -> dispatcher.processed.sum(), dispatcher -> dispatcher.deliveryNanos.sum(),
+                        TimeUnit.NANOSECONDS)
+                .register(registry);
+        Gauge.builder("order.outbox.workers.queued", workers, pool -> pool.getQueue().size()).register(registry);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        workers.shutdown();
+        if (!workers.awaitTermination(10, TimeUnit.SECONDS)) {
+            // leased events not finished by now are claimed again after the next start
+            workers.shutdownNow();
+        }
+    }
+
+    private List<Event> claim() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Event> batch = jdbcTemplate.query(CLAIM_SQL, (rs, i) -> new Event(
+                rs.getLong("id"),
+                rs.getLong("order_id"),
+                rs.getTimestamp("created_at").toLocalDateTime(),
+                rs.getInt("attempts")), Timestamp.valueOf(now), batchSize);
+        if (!batch.isEmpty()) {
+            namedJdbcTemplate.update(LEASE_SQL, Map.of(
+                    "until", Timestamp.valueOf(now.plus(lease)),
+                    "ids", batch.stream().map(Event::id).toList()));
+        }
+        return batch;
+    }
+
+    private void process(List<Event> batch) {
+        for (Event event : batch) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    handlers.forEach(handler -> handler.onOrderPlaced(event.orderId()));
+                    jdbcTemplate.update(DONE_SQL, event.id());
+                });
+                processed.increment();
+                deliveryNanos.add(Duration.between(event.createdAt(), LocalDateTime.now()).toNanos());
+            } catch (RuntimeException e) {
+                failures.increment();
+                log.warn("Post-order work for order {} failed on attempt {}", event.orderId(), event.attempts() + 1, e);
+                retryLater(event, e);
+            }
+        }
+    }
+
+    private void retryLater(Event event, RuntimeException failure) {
+        Duration delay = retryDelay.multipliedBy(1L << Math.min(event.attempts(), 20));
+        if (delay.compareTo(maxRetryDelay) > 0) {
+            delay = maxRetryDelay;
+        }
+        String error = String.valueOf(failure);
+        try {
+            jdbcTemplate.update(RETRY_SQL, Timestamp.valueOf(LocalDateTime.now().plus(delay)),
+                    error.length() > 500 ? error.substring(0, 500) : error, event.id());
+        } catch (RuntimeException e) {
+            // the lease still runs out, the event is only retried later than planned
+            log.warn("Could not reschedule outbox event {}", event.id(), e);
+        }
+    }
+
+    private record Event(long id, long orderId, LocalDateTime createdAt, int attempts) {
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.onlineshop.Service;
+
+/**
+ * Post-order work run by OrderOutboxDispatcher after an order commits.
+ *
+ * Delivery is at least once: a handler runs again after any handler of the
+ * same event failed, or when the application stopped before the event was
+ * marked done, so it must be idempotent. It runs in the transaction that
+ * marks the event done.
+ */
+public interface OrderPlacedHandler {
+
+    void onOrderPlaced(Long orderId);
+}
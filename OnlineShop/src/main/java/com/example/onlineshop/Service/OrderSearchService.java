@@ -0,0 +1,125 @@
+package com.example.onlineshop.Service;
+
+import com.example.onlineshop.Entity.OrderStatus;
+import com.example.onlineshop.Repository.OrderItemRepository;
+import com.example.onlineshop.Repository.OrderItemRepository.OrderLine;
+import com.example.onlineshop.Util.OrderCursor;
+import com.example.onlineshop.Util.OrderMapper;
+import com.example.onlineshop.dto.OrderPageResponseDto;
+import com.example.onlineshop.dto.OrderResponseDto;
+import com.example.onlineshop.dto.OrderSearchCriteria;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Admin search over all orders, newest first, one keyset page at a time.
+ *
+ * The WHERE clause holds only the filters that were given, so each filter
+ * combination is its own statement and gets its own plan. All of them sort
+ * by (created_at, id) and are led by an equality on customer_id or status
+ * when one is given, which the V22 and V23 indexes serve in that order: the
+ * scan stops after one page instead of sorting every match. The minimum
+ * total is checked on the rows the index returns.
+ */
+@Service
+public class OrderSearchService {
+
+    private static final String SELECT_SQL =
+            "SELECT o.id, o.customer_id, o.total_amount, o.status, o.created_at FROM orders o";
+    private static final String ORDER_SQL = " ORDER BY o.created_at DESC, o.id DESC LIMIT :limit";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final OrderItemRepository orderItemRepository;
+    private final OrderMapper mapper;
+    private final int defaultPageSize;
+    private final int maxPageSize;
+
+    public OrderSearchService(JdbcTemplate jdbcTemplate,
+                              OrderItemRepository orderItemRepository,
+                              OrderMapper mapper,
+                              @Value("${order.page.default-size:20}") int defaultPageSize,
+                              @Value("${order.page.max-size:100}") int maxPageSize) {
+        this.jdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.orderItemRepository = orderItemRepository;
+        this.mapper = mapper;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+    }
+
+    @Transactional(readOnly = true)
+    public OrderPageResponseDto search(OrderSearchCriteria criteria, String cursor, Integer size) {
+        int pageSize = size == null ? defaultPageSize : Math.max(1, Math.min(size, maxPageSize));
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        // one extra row tells us whether there is a next page
+        String sql = buildQuery(criteria, cursor == null ? null : OrderCursor.decode(cursor), pageSize + 1, params);
+
+        List<OrderResponseDto> rows = jdbcTemplate.query(sql, params, (rs, i) -> OrderResponseDto.builder()
+                .id(rs.getLong("id"))
+                .customerId(rs.getLong("customer_id"))
+                .totalAmount(rs.getBigDecimal("total_amount"))
+                .status(OrderStatus.valueOf(rs.getString("status")))
+                .createdAt(rs.getTimestamp("created_at").toLocalDateTime())
+                .build());
+
+        boolean hasMore = rows.size() > pageSize;
+        List<OrderResponseDto> page = hasMore ? rows.subList(0, pageSize) : rows;
+        Map<Long, List<OrderLine>> lines = page.isEmpty()
+                ? Map.of()
+                : orderItemRepository.findLinesByOrderIds(page.stream().map(OrderResponseDto::getId).toList()).stream()
+                        .collect(Collectors.groupingBy(OrderLine::getOrderId));
+        page.forEach(order -> order.setItems(lines.getOrDefault(order.getId(), List.of()).stream()
+                .map(mapper::toItemResponse)
+                .toList()));
+
+        OrderResponseDto last = hasMore ? page.get(pageSize - 1) : null;
+        return OrderPageResponseDto.builder()
+                .items(page)
+                .nextCursor(last == null ? null : new OrderCursor(last.getCreatedAt(), last.getId()).encode())
+                .build();
+    }
+
+    // the statement for one filter combination, its values go into params
+    String buildQuery(OrderSearchCriteria criteria, OrderCursor after, int limit, MapSqlParameterSource params) {
+        List<String> conditions = new ArrayList<>();
+        if (criteria.getCustomerId() != null) {
+            conditions.add("o.customer_id = :customerId");
+            params.addValue("customerId", criteria.getCustomerId());
+        }
+        if (criteria.getStatus() != null) {
+            // a literal rather than a parameter, so PENDING can be planned on its partial index
+            conditions.add("o.status = '" + criteria.getStatus().name() + "'");
+        }
+        if (criteria.getFrom() != null) {
+            conditions.add("o.created_at >= :from");
+            params.addValue("from", Timestamp.valueOf(criteria.getFrom()));
+        }
+        if (criteria.getTo() != null) {
+            conditions.add("o.created_at < :to");
+            params.addValue("to", Timestamp.valueOf(criteria.getTo()));
+        }
+        if (criteria.getMinTotal() != null) {
+            conditions.add("o.total_amount >= :minTotal");
+            params.addValue("minTotal", criteria.getMinTotal());
+        }
+        if (after != null) {
+            // the first term bounds the index range, the second skips the ties already returned
+            conditions.add("o.created_at <= :afterCreatedAt AND (o.created_at < :afterCreatedAt OR o.id < :afterId)");
+            params.addValue("afterCreatedAt", Timestamp.valueOf(after.createdAt()));
+            params.addValue("afterId", after.id());
+        }
+        params.addValue("limit", limit);
+
+        String where = conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions);
+        return SELECT_SQL + where + ORDER_SQL;
+    }
+}
@@ -11,10 +11,17 @@ import com.example.onlineshop.Repository.ProductRepository;
 import com.example.onlineshop.exception.ProductNotFoundException;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -24,8 +31,23 @@ public class OrderService {
     private final CustomerRepository customerRepository;
     private final ProductRepository productRepository;
     private final OrderMapper mapper;
+    private final StockReservations stockReservations;
+    private final IdempotencyKeys idempotencyKeys;
+    private final TransactionTemplate transactionTemplate;
+    private final OrderOutbox orderOutbox;
+
+    /**
+     * createOrder behind an Idempotency-Key: a repeated key returns the order
+     * the first request created instead of creating another.
+     */
+    public OrderResponseDto createOrder(OrderRequestDto request, String idempotencyKey) {
+        return idempotencyKeys.execute("orders", idempotencyKey, request, OrderResponseDto.class,
+                claim -> transactionTemplate.execute(status -> idempotencyKeys.record(claim, createOrder(request))));
+    }
 
+    @Transactional
     public OrderResponseDto createOrder(OrderRequestDto request) {
+        orderOutbox.admit();
         Customer customer = customerRepository.findById(request.getCustomerId())
                 .orElseThrow(() -> new ProductNotFoundException("Customer not found"));
 
@@ -34,44 +56,56 @@ public class OrderService {
         order.setStatus(OrderStatus.PENDING);
         order.setCreatedAt(LocalDateTime.now());
 
-        BigDecimal total = BigDecimal.ZERO;
-
+        // repeated lines for a product become one line
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
         for (OrderItemRequestDto itemDto : request.getItems()) {
-            Product product = productRepository.findById(itemDto.getProductId())
-                    .orElseThrow(() -> new ProductNotFoundException("Product not found"));
-
-            OrderItem item = new OrderItem();
-            item.setOrder(order);
-            item.setProduct(product);
-            item.setQuantity(itemDto.getQuantity());
-            item.setPriceAtPurchase((product.getPrice()));
+            quantities.merge(itemDto.getProductId(), itemDto.getQuantity(), Integer::sum);
+        }
 
-            order.getItems().add(item);
+        // one query for every product of the order, however many lines it has
+        Map<Long, Product> products = productRepository.findAllById(quantities.keySet()).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        List<Long> missing = quantities.keySet().stream()
+                .filter(productId -> !products.containsKey(productId))
+                .toList();
+        if (!missing.isEmpty()) {
+            throw new ProductNotFoundException("Product not found: " + missing);
+        }
 
-            total = total.add(product.getPrice().multiply(BigDecimal.valueOf(itemDto.getQuantity())));
+        BigDecimal total = BigDecimal.ZERO;
+        List<OrderItem> items = new ArrayList<>(quantities.size());
+        for (Map.Entry<Long, Integer> line : quantities.entrySet()) {
+            Product product = products.get(line.getKey());
+
+            items.add(OrderItem.builder()
+                    .order(order)
+                    .product(product)
+                    .quantity(line.getValue())
+                    .priceAtPurchase(product.getPrice())
+                    .build());
+
+            total = total.add(product.getPrice().multiply(BigDecimal.valueOf(line.getValue())));
         }
 
+        order.setItems(items);
         order.setTotalAmount(total);
+        stockReservations.reserve(quantities);
 
         Order saved = orderRepository.save(order);
+        orderOutbox.append(saved);
         return mapper.toResponse(saved);
     }
 
+    @Transactional(readOnly = true)
     public OrderResponseDto getOrderById(Long id) {
-        return orderRepository.findById(id)
+        return orderRepository.findWithItemsById(id)
                 .map(mapper::toResponse)
                 .orElseThrow(() -> new RuntimeException("Order not found"));
     }
 
-    public List<OrderResponseDto> getOrdersByCustomer(Long customerId) {
-        return orderRepository.findByCustomerId(customerId)
-                .stream()
-                .map(mapper::toResponse)
-                .toList();
-    }
-
+    @Transactional
     public OrderResponseDto updateOrderStatus(Long id, OrderStatus status) {
-        Order order = orderRepository.findById(id)
+        Order order = orderRepository.findWithItemsById(id)
                 .orElseThrow(() -> new RuntimeException("Order not found"));
 
         order.setStatus(status);
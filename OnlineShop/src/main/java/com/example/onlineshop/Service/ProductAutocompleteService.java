@@ -0,0 +1,168 @@
+package com.example.onlineshop.Service;
+
+import com.example.onlineshop.Repository.OrderItemRepository;
+import com.example.onlineshop.Repository.OrderItemRepository.ProductSales;
+import com.example.onlineshop.Util.ProductAutocompleteIndex;
+import com.example.onlineshop.dto.ProductSuggestionDto;
+import com.example.onlineshop.event.ProductChangedEvent;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Type-ahead suggestions for product names, ranked by units sold.
+ *
+ * Names come from the catalog on startup and from committed product writes
+ * afterwards; only a create, a delete or a rename touches the index. Sales
+ * figures are re-read from order_items on a schedule, and the same job folds
+ * the write delta back into the compact static part.
+ */
+@Slf4j
+@Service
+public class ProductAutocompleteService implements MeterBinder {
+
+    private final ProductService productService;
+    private final OrderItemRepository orderItemRepository;
+    private final int maxResults;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object rebuildMonitor = new Object();
+    private ProductAutocompleteIndex index = ProductAutocompleteIndex.empty();
+    private List<ProductChangedEvent> pending;
+
+    public ProductAutocompleteService(ProductService productService,
+                                      OrderItemRepository orderItemRepository,
+                                      @Value("${product.autocomplete.max-results:10}") int maxResults) {
+        this.productService = productService;
+        this.orderItemRepository = orderItemRepository;
+        this.maxResults = maxResults;
+    }
+
+    public List<ProductSuggestionDto> suggest(String prefix, Integer limit) {
+        int size = limit == null ? maxResults : Math.max(1, Math.min(limit, maxResults));
+        lock.readLock().lock();
+        try {
+            return index.suggest(prefix, size);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // also run by CatalogIndexRebuilder once a bulk import has committed
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildFromDatabase() {
+        rebuild(() -> {
+            Map<Long, String> names = new LinkedHashMap<>();
+            productService.streamSnapshots(product -> names.put(product.id(), product.name()));
+            return names;
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${product.autocomplete.refresh-interval:PT15M}",
+            initialDelayString = "${product.autocomplete.refresh-interval:PT15M}")
+    public void refreshPopularity() {
+        rebuild(() -> {
+            lock.readLock().lock();
+            try {
+                return index.liveProducts();
+            } finally {
+                lock.readLock().unlock();
+            }
+        });
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        if (!event.isCreate() && !event.isDelete()
+                && Objects.equals(event.previous().name(), event.current().name())) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            apply(index, event);
+            if (pending != null) {
+                pending.add(event);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public long estimatedMemoryBytes() {
+        lock.readLock().lock();
+        try {
+            return index.estimatedMemoryBytes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("product.autocomplete.memory", this, ProductAutocompleteService::estimatedMemoryBytes)
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    private void rebuild(Supplier<Map<Long, String>> names) {
+        synchronized (rebuildMonitor) {
+            long started = System.nanoTime();
+            setPending(new ArrayList<>());
+            ProductAutocompleteIndex fresh;
+            try {
+                Map<Long, Long> popularity = new HashMap<>();
+                for (ProductSales sales : orderItemRepository.sumQuantitiesByProduct()) {
+                    popularity.put(sales.getProductId(), sales.getQuantity());
+                }
+                fresh = ProductAutocompleteIndex.build(names.get(), popularity);
+            } catch (RuntimeException e) {
+                setPending(null);
+                throw e;
+            }
+
+            lock.writeLock().lock();
+            try {
+                pending.forEach(event -> apply(fresh, event));
+                pending = null;
+                index = fresh;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            log.info("Product autocomplete rebuilt with {} products in {} ms, ~{} KB",
+                    fresh.size(), (System.nanoTime() - started) / 1_000_000, fresh.estimatedMemoryBytes() / 1024);
+        }
+    }
+
+    private void apply(ProductAutocompleteIndex target, ProductChangedEvent event) {
+        if (event.isDelete()) {
+            target.remove(event.productId());
+        } else {
+            target.put(event.productId(), event.current().name());
+        }
+    }
+
+    private void setPending(List<ProductChangedEvent> events) {
+        lock.writeLock().lock();
+        try {
+            pending = events;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
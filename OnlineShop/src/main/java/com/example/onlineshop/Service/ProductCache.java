@@ -0,0 +1,130 @@
+package com.example.onlineshop.Service;
+
+import com.example.onlineshop.dto.ProductResponseDto;
+import com.example.onlineshop.event.ProductChangedEvent;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded LRU cache of product responses keyed by product id, with a TTL on
+ * every entry.
+ *
+ * Loaders take a stamp before reading the database and hand it back on
+ * putIfCurrent. Every invalidation moves the generation forward, so a value
+ * read before a product write committed can never be stored after that write
+ * invalidated the entry.
+ */
+@Component
+public class ProductCache implements MeterBinder {
+
+    private final int maxSize;
+    private final long ttlNanos;
+
+    private final LinkedHashMap<Long, Entry> entries;
+    private long generation;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public ProductCache(@Value("${product.cache.max-size:10000}") int maxSize,
+                        @Value("${product.cache.ttl:10m}") Duration ttl) {
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                if (size() > ProductCache.this.maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public synchronized ProductResponseDto get(Long id) {
+        Entry entry = entries.get(id);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (System.nanoTime() - entry.loadedAt > ttlNanos) {
+            entries.remove(id);
+            evictions.increment();
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.value;
+    }
+
+    /**
+     * Stamp to take before loading a product from the database.
+     */
+    public synchronized long stamp() {
+        return generation;
+    }
+
+    /**
+     * Stores a loaded value unless the cache was invalidated since the stamp was taken.
+     */
+    public synchronized void putIfCurrent(Long id, ProductResponseDto value, long stamp) {
+        if (stamp == generation) {
+            entries.put(id, new Entry(value, System.nanoTime()));
+        }
+    }
+
+    public synchronized void invalidate(Long id) {
+        generation++;
+        entries.remove(id);
+    }
+
+    public synchronized void clear() {
+        generation++;
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    // runs after commit (or right away outside a transaction)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        invalidate(event.productId());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("product.cache.hits", this, ProductCache::hitCount).register(registry);
+        FunctionCounter.builder("product.cache.misses", this, ProductCache::missCount).register(registry);
+        FunctionCounter.builder("product.cache.evictions", this, ProductCache::evictionCount).register(registry);
+        Gauge.builder("product.cache.size", this, ProductCache::size).register(registry);
+    }
+
+    private record Entry(ProductResponseDto value, long loadedAt) {
+    }
+}
@@ -0,0 +1,220 @@
+package com.example.onlineshop.Service;
+
+import com.example.onlineshop.Repository.ProductRepository;
+import com.example.onlineshop.Repository.ProductRepository.CategoryPrice;
+import com.example.onlineshop.Repository.ProductRepository.CategoryPriceCount;
+import com.example.onlineshop.dto.PriceBucketDto;
+import com.example.onlineshop.dto.ProductFacetsResponseDto;
+import com.example.onlineshop.event.ProductChangedEvent;
+import com.example.onlineshop.event.ProductSnapshot;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Category counts and price histograms for the catalog, kept in memory.
+ *
+ * Every committed product write moves one product between buckets, so a read
+ * never scans products. A scheduled reconcile recomputes the same aggregates
+ * with one GROUP BY query and replaces the in-memory counts, which corrects
+ * drift from writes that bypass ProductService; CatalogIndexRebuilder runs it
+ * right after a bulk import. Products without a category are counted on their
+ * own, so no category name can collide with them.
+ */
+@Slf4j
+@Service
+public class ProductFacetService {
+
+    private final ProductRepository repository;
+    private final TransactionTemplate transactionTemplate;
+    private final BigDecimal[] bounds;
+
+    // category -> product count per price bucket; products without a category are under null
+    private Map<String, long[]> buckets = new HashMap<>();
+    private List<ProductChangedEvent> pending;
+
+    public ProductFacetService(ProductRepository repository,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${product.facets.price-buckets:10,25,50,100,250,500,1000}") BigDecimal[] bounds) {
+        this.repository = repository;
+        // the counts and the lookups of products written meanwhile must see the same snapshot
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.transactionTemplate.setReadOnly(true);
+        this.bounds = bounds.clone();
+        Arrays.sort(this.bounds);
+    }
+
+    public synchronized ProductFacetsResponseDto getFacets(String category) {
+        Map<String, Long> categories = new TreeMap<>();
+        long[] histogram = new long[bounds.length + 1];
+        long total = 0;
+        long uncategorized = 0;
+        for (Map.Entry<String, long[]> entry : buckets.entrySet()) {
+            long count = Arrays.stream(entry.getValue()).sum();
+            if (count == 0) {
+                continue;
+            }
+            if (entry.getKey() == null) {
+                uncategorized = count;
+            } else {
+                categories.put(entry.getKey(), count);
+            }
+            total += count;
+            if (category == null || category.equals(entry.getKey())) {
+                for (int i = 0; i < histogram.length; i++) {
+                    histogram[i] += entry.getValue()[i];
+                }
+            }
+        }
+
+        List<PriceBucketDto> priceHistogram = new ArrayList<>(histogram.length);
+        for (int i = 0; i < histogram.length; i++) {
+            BigDecimal from = i == 0 ? BigDecimal.ZERO : bounds[i - 1];
+            BigDecimal to = i == bounds.length ? null : bounds[i];
+            priceHistogram.add(new PriceBucketDto(from, to, histogram[i]));
+        }
+        return ProductFacetsResponseDto.builder()
+                .total(total)
+                .categories(categories)
+                .uncategorized(uncategorized)
+                .priceHistogram(priceHistogram)
+                .build();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onProductChanged(ProductChangedEvent event) {
+        apply(buckets, event);
+        if (pending != null) {
+            pending.add(event);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${product.facets.reconcile-interval:PT10M}",
+            initialDelayString = "${product.facets.reconcile-interval:PT10M}")
+    public void reconcile() {
+        synchronized (this) {
+            pending = new ArrayList<>();
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                Map<String, long[]> fresh = new HashMap<>();
+                for (CategoryPriceCount row : repository.countByCategoryAndPrice()) {
+                    fresh.computeIfAbsent(row.getCategory(), c -> new long[bounds.length + 1])
+                            [bucketOf(row.getPrice())] += row.getCount();
+                }
+                replayAndSwap(fresh);
+            });
+        } finally {
+            synchronized (this) {
+                pending = null;
+            }
+        }
+    }
+
+    /**
+     * Replays the writes that committed after reconcile started onto the counts
+     * read in the same snapshot. A write may have landed before the GROUP BY
+     * saw the table, so every product with a pending event is looked up in
+     * that snapshot too, and an event is replayed only if it starts from where
+     * the snapshot (or the events replayed before it) left the product.
+     */
+    private void replayAndSwap(Map<String, long[]> fresh) {
+        Map<Long, Placement> seen = new HashMap<>();
+        while (true) {
+            List<Long> unseen;
+            synchronized (this) {
+                unseen = pending.stream()
+                        .map(ProductChangedEvent::productId)
+                        .filter(id -> !seen.containsKey(id))
+                        .distinct()
+                        .toList();
+                if (unseen.isEmpty()) {
+                    for (ProductChangedEvent event : pending) {
+                        if (seen.get(event.productId()).equals(placement(event.previous()))) {
+                            apply(fresh, event);
+                            seen.put(event.productId(), placement(event.current()));
+                        }
+                    }
+                    long drift = drift(buckets, fresh);
+                    if (drift > 0 && !buckets.isEmpty()) {
+                        log.info("Product facets reconciled, corrected {} bucket counts", drift);
+                    }
+                    buckets = fresh;
+                    return;
+                }
+            }
+            // outside the monitor so writes keep landing; the next pass picks up their products
+            unseen.forEach(id -> seen.put(id, Placement.ABSENT));
+            for (CategoryPrice row : repository.findCategoryPrices(unseen)) {
+                seen.put(row.getId(), new Placement(row.getCategory(), bucketOf(row.getPrice())));
+            }
+        }
+    }
+
+    private void apply(Map<String, long[]> target, ProductChangedEvent event) {
+        if (event.previous() != null) {
+            move(target, event.previous(), -1);
+        }
+        if (event.current() != null) {
+            move(target, event.current(), 1);
+        }
+    }
+
+    private void move(Map<String, long[]> target, ProductSnapshot product, int delta) {
+        target.computeIfAbsent(product.category(), c -> new long[bounds.length + 1])
+                [bucketOf(product.price())] += delta;
+    }
+
+    private int bucketOf(BigDecimal price) {
+        if (price == null) {
+            return 0;
+        }
+        int index = Arrays.binarySearch(bounds, price);
+        // an exact bound starts the next bucket
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    private Placement placement(ProductSnapshot product) {
+        return product == null ? Placement.ABSENT : new Placement(product.category(), bucketOf(product.price()));
+    }
+
+    private static long drift(Map<String, long[]> before, Map<String, long[]> after) {
+        long differences = 0;
+        for (Map.Entry<String, long[]> entry : after.entrySet()) {
+            long[] old = before.get(entry.getKey());
+            for (int i = 0; i < entry.getValue().length; i++) {
+                if ((old == null ? 0 : old[i]) != entry.getValue()[i]) {
+                    differences++;
+                }
+            }
+        }
+        for (Map.Entry<String, long[]> entry : before.entrySet()) {
+            if (!after.containsKey(entry.getKey())) {
+                differences += Arrays.stream(entry.getValue()).filter(c -> c != 0).count();
+            }
+        }
+        return differences;
+    }
+
+    // where a product is counted: its category and price bucket, or nowhere
+    private record Placement(String category, int bucket) {
+        static final Placement ABSENT = new Placement(null, -1);
+    }
+}
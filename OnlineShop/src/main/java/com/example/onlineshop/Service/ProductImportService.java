@@ -0,0 +1,245 @@
+package com.example.onlineshop.Service;
+
+import com.example.onlineshop.Util.CsvLineParser;
+import com.example.onlineshop.Util.SequenceBlocks;
+import com.example.onlineshop.dto.BulkImportResultDto;
+import com.example.onlineshop.dto.BulkImportResultDto.RowError;
+import com.example.onlineshop.dto.ProductRequestDto;
+import com.example.onlineshop.event.ProductsImportedEvent;
+import com.example.onlineshop.exception.InvalidRequestException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Streaming bulk import of products from NDJSON or CSV.
+ *
+ * The body is read one line at a time. Rows are validated against the same
+ * constraints as POST /api/products and inserted with JDBC batch statements,
+ * one transaction per batch, so heap use depends on the batch size and not on
+ * the size of the upload. Bad rows are reported by line number and skipped.
+ * A batch the database rejects is split in halves and each half retried on
+ * its own, down to single rows, so only the rows that fail by themselves are
+ * rejected and the rest of the batch still lands.
+ */
+@Slf4j
+@Service
+public class ProductImportService {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO products (id, name, price, description, stock_quantity, category) VALUES (?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final SequenceBlocks sequenceBlocks;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher events;
+    private final int batchSize;
+    private final int maxReportedErrors;
+
+    public ProductImportService(JdbcTemplate jdbcTemplate,
+                                TransactionTemplate transactionTemplate,
+                                SequenceBlocks sequenceBlocks,
+                                Validator validator,
+                                ObjectMapper objectMapper,
+                                ApplicationEventPublisher events,
+                                @Value("${product.import.batch-size:1000}") int batchSize,
+                                @Value("${product.import.max-reported-errors:1000}") int maxReportedErrors) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.sequenceBlocks = sequenceBlocks;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.events = events;
+        this.batchSize = batchSize;
+        this.maxReportedErrors = maxReportedErrors;
+    }
+
+    public BulkImportResultDto importProducts(InputStream body, ImportFormat format) {
+        long started = System.nanoTime();
+        ImportRun run = new ImportRun();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            List<String> header = format == ImportFormat.CSV ? readHeader(reader, run) : null;
+            List<ImportRow> batch = new ArrayList<>(batchSize);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                run.line++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                run.received++;
+                ProductRequestDto row = parse(line, header, run);
+                if (row == null) {
+                    continue;
+                }
+                batch.add(new ImportRow(run.line, row));
+                if (batch.size() == batchSize) {
+                    flush(batch, run);
+                }
+            }
+            flush(batch, run);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        if (run.imported > 0) {
+            events.publishEvent(new ProductsImportedEvent(run.imported));
+        }
+        long elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+        log.info("Imported {} of {} products in {} ms", run.imported, run.received, elapsedMillis);
+        return BulkImportResultDto.builder()
+                .received(run.received)
+                .imported(run.imported)
+                .failed(run.failed)
+                .elapsedMillis(elapsedMillis)
+                .errors(run.errors)
+                .build();
+    }
+
+    private List<String> readHeader(BufferedReader reader, ImportRun run) throws IOException {
+        String headerLine = reader.readLine();
+        run.line++;
+        if (headerLine == null) {
+            throw new InvalidRequestException("CSV import needs a header line");
+        }
+        List<String> header = CsvLineParser.parse(headerLine).stream()
+                .map(column -> column.trim().toLowerCase(Locale.ROOT))
+                .toList();
+        if (!header.contains("name") || !header.contains("price")) {
+            throw new InvalidRequestException("CSV header must name at least the name and price columns");
+        }
+        return header;
+    }
+
+    private ProductRequestDto parse(String line, List<String> header, ImportRun run) {
+        ProductRequestDto row;
+        try {
+            row = header == null ? objectMapper.readValue(line, ProductRequestDto.class) : fromCsv(line, header);
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            run.reject(run.line, "Malformed row: " + String.valueOf(e.getMessage()).lines().findFirst().orElse(""));
+            return null;
+        }
+        if (row == null) {
+            run.reject(run.line, "Malformed row: expected a JSON object");
+            return null;
+        }
+
+        Set<ConstraintViolation<ProductRequestDto>> violations = validator.validate(row);
+        if (!violations.isEmpty()) {
+            run.reject(run.line, violations.stream()
+                    .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining(", ")));
+            return null;
+        }
+        return row;
+    }
+
+    private ProductRequestDto fromCsv(String line, List<String> header) {
+        List<String> fields = CsvLineParser.parse(line);
+        if (fields.size() != header.size()) {
+            throw new IllegalArgumentException("expected " + header.size() + " fields but found " + fields.size());
+        }
+        ProductRequestDto row = new ProductRequestDto();
+        for (int i = 0; i < fields.size(); i++) {
+            String value = fields.get(i).isEmpty() ? null : fields.get(i);
+            switch (header.get(i)) {
+                case "name" -> row.setName(value);
+                case "price" -> row.setPrice(value == null ? null : new BigDecimal(value.trim()));
+                case "description" -> row.setDescription(value);
+                case "stockquantity", "stock_quantity" -> row.setStockQuantity(value == null ? null : Integer.valueOf(value.trim()));
+                case "category" -> row.setCategory(value);
+                default -> {
+                    // unknown columns are ignored
+                }
+            }
+        }
+        return row;
+    }
+
+    private void flush(List<ImportRow> batch, ImportRun run) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        insert(batch, run);
+        batch.clear();
+    }
+
+    private void insert(List<ImportRow> rows, ImportRun run) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                long[] ids = sequenceBlocks.next("products_id_seq", rows.size());
+                int[] next = {0};
+                jdbcTemplate.batchUpdate(INSERT_SQL, rows, rows.size(), (ps, importRow) -> {
+                    ProductRequestDto row = importRow.product();
+                    ps.setLong(1, ids[next[0]++]);
+                    ps.setString(2, row.getName());
+                    ps.setBigDecimal(3, row.getPrice());
+                    if (row.getDescription() == null) {
+                        ps.setNull(4, Types.VARCHAR);
+                    } else {
+                        ps.setString(4, row.getDescription());
+                    }
+                    ps.setInt(5, row.getStockQuantity());
+                    ps.setString(6, row.getCategory());
+                });
+            });
+            run.imported += rows.size();
+        } catch (DataAccessException e) {
+            if (rows.size() == 1) {
+                run.reject(rows.get(0).line(), "Rejected by the database: " + e.getMostSpecificCause().getMessage());
+                return;
+            }
+            // a rolled back batch says nothing about which row broke it, halve it until the bad rows stand alone
+            int half = rows.size() / 2;
+            insert(rows.subList(0, half), run);
+            insert(rows.subList(half, rows.size()), run);
+        }
+    }
+
+    public enum ImportFormat {
+        NDJSON,
+        CSV
+    }
+
+    private record ImportRow(long line, ProductRequestDto product) {
+    }
+
+    private final class ImportRun {
+        private long line;
+        private long received;
+        private long imported;
+        private long failed;
+        private final List<RowError> errors = new ArrayList<>();
+
+        void reject(long line, String message) {
+            failed++;
+            if (errors.size() < maxReportedErrors) {
+                errors.add(new RowError(line, message));
+            }
+        }
+    }
+}
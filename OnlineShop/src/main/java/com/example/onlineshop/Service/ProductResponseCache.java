@@ -0,0 +1,225 @@
+package com.example.onlineshop.Service;
+
+import com.example.onlineshop.event.ProductChangedEvent;
+import com.example.onlineshop.event.ProductsImportedEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serialized JSON bodies of product and catalog page responses, so a repeated
+ * read skips Jackson and is written out as-is.
+ *
+ * Every body is stored under a tag naming the state it was rendered from: the
+ * product version for a single product, the catalog ETag for a page. A lookup
+ * with a different tag renders the body again, so a stale body is never served
+ * even if an invalidation is missed. Committed product writes drop the bodies
+ * they affect right away to free the memory. The cache is bounded by the total
+ * size of the stored bytes and evicts least recently used bodies first.
+ */
+@Component
+public class ProductResponseCache implements MeterBinder {
+
+    public static final String PAGE_PREFIX = "products:";
+    public static final String PRODUCT_PREFIX = "product:";
+
+    private final ObjectMapper objectMapper;
+    private final long maxBytes;
+    private final int gzipMinSize;
+
+    private final LinkedHashMap<String, Body> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long storedBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public ProductResponseCache(ObjectMapper objectMapper,
+                                @Value("${product.response-cache.max-size:64MB}") DataSize maxSize,
+                                @Value("${product.response-cache.gzip-min-size:1KB}") DataSize gzipMinSize) {
+        this.objectMapper = objectMapper;
+        this.maxBytes = maxSize.toBytes();
+        this.gzipMinSize = (int) gzipMinSize.toBytes();
+    }
+
+    /**
+     * Body stored under key for this tag, rendering and storing it from the
+     * supplied DTO on a miss. The supplier runs outside the cache lock.
+     */
+    public Body get(String key, String tag, Supplier<?> dto) {
+        synchronized (this) {
+            Body cached = entries.get(key);
+            if (cached != null && cached.tag.equals(tag)) {
+                hits.increment();
+                return cached;
+            }
+        }
+        misses.increment();
+
+        Body body;
+        try {
+            body = new Body(key, tag, objectMapper.writeValueAsBytes(dto.get()));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize " + key, e);
+        }
+        synchronized (this) {
+            Body previous = entries.put(key, body);
+            if (previous != null) {
+                storedBytes -= previous.size();
+            }
+            storedBytes += body.size();
+            evict();
+        }
+        return body;
+    }
+
+    public synchronized void invalidate(String key) {
+        Body removed = entries.remove(key);
+        if (removed != null) {
+            storedBytes -= removed.size();
+        }
+    }
+
+    public synchronized void invalidatePages() {
+        entries.entrySet().removeIf(entry -> {
+            if (entry.getKey().startsWith(PAGE_PREFIX)) {
+                storedBytes -= entry.getValue().size();
+                return true;
+            }
+            return false;
+        });
+    }
+
+    public synchronized long storedBytes() {
+        return storedBytes;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        invalidate(PRODUCT_PREFIX + event.productId());
+        invalidatePages();
+    }
+
+    @EventListener(ProductsImportedEvent.class)
+    public void onProductsImported() {
+        invalidatePages();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("product.response-cache.hits", this, ProductResponseCache::hitCount).register(registry);
+        FunctionCounter.builder("product.response-cache.misses", this, ProductResponseCache::missCount).register(registry);
+        Gauge.builder("product.response-cache.bytes", this, ProductResponseCache::storedBytes)
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    /**
+     * True if an Accept-Encoding header value admits gzip.
+     */
+    public static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.toLowerCase(Locale.ROOT).split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equals("gzip")) {
+                return parts.length == 1 || !parts[1].replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
+    private void evict() {
+        var iterator = entries.values().iterator();
+        while (storedBytes > maxBytes && iterator.hasNext()) {
+            storedBytes -= iterator.next().size();
+            iterator.remove();
+        }
+    }
+
+    private synchronized byte[] attachGzip(Body body, byte[] compressed) {
+        if (body.gzip != null) {
+            return body.gzip;
+        }
+        body.gzip = compressed;
+        // a body that was already dropped no longer counts towards the limit
+        if (entries.get(body.key) == body) {
+            storedBytes += compressed.length;
+            evict();
+        }
+        return compressed;
+    }
+
+    public final class Body {
+        private final String key;
+        private final String tag;
+        private final byte[] json;
+        private volatile byte[] gzip;
+
+        private Body(String key, String tag, byte[] json) {
+            this.key = key;
+            this.tag = Objects.requireNonNull(tag);
+            this.json = json;
+        }
+
+        public byte[] json() {
+            return json;
+        }
+
+        /**
+         * Gzip-compressed copy, built on first use, or null for bodies too small to be worth it.
+         */
+        public byte[] gzip() {
+            if (json.length < gzipMinSize) {
+                return null;
+            }
+            byte[] compressed = gzip;
+            return compressed != null ? compressed : attachGzip(this, compress(json));
+        }
+
+        // called with the cache lock held, like every write of gzip
+        private long size() {
+            return json.length + (gzip == null ? 0 : gzip.length);
+        }
+    }
+
+    private static byte[] compress(byte[] json) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+}
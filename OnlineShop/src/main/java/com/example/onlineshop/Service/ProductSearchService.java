@@ -0,0 +1,117 @@
+package com.example.onlineshop.Service;
+
+import com.example.onlineshop.Util.ProductMapper;
+import com.example.onlineshop.Util.ProductSearchIndex;
+import com.example.onlineshop.dto.ProductResponseDto;
+import com.example.onlineshop.event.ProductChangedEvent;
+import com.example.onlineshop.exception.InvalidRequestException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Full-text product search served from an in-process {@link ProductSearchIndex}.
+ *
+ * The index is built from the database once the application is ready and kept
+ * current by committed product writes. While a rebuild streams the catalog,
+ * writes are applied to the live index and also queued, then replayed onto the
+ * new index before it is swapped in, so nothing committed during the rebuild
+ * is lost.
+ */
+@Slf4j
+@Service
+public class ProductSearchService {
+
+    private final ProductService productService;
+    private final ProductMapper mapper;
+    private final int maxResults;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object rebuildMonitor = new Object();
+    private ProductSearchIndex index = new ProductSearchIndex();
+    private List<ProductChangedEvent> pending;
+
+    public ProductSearchService(ProductService productService, ProductMapper mapper,
+                                @Value("${product.search.max-results:100}") int maxResults) {
+        this.productService = productService;
+        this.mapper = mapper;
+        this.maxResults = maxResults;
+    }
+
+    public List<ProductResponseDto> search(String query, Integer limit) {
+        if (query == null || query.isBlank()) {
+            throw new InvalidRequestException("Search query is required");
+        }
+        int size = limit == null ? 20 : Math.max(1, Math.min(limit, maxResults));
+        lock.readLock().lock();
+        try {
+            return index.search(query, size);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // after a bulk import CatalogIndexRebuilder calls this off the request thread
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        synchronized (rebuildMonitor) {
+            long started = System.nanoTime();
+            setPending(new ArrayList<>());
+            ProductSearchIndex fresh = new ProductSearchIndex();
+            try {
+                productService.streamSnapshots(product -> fresh.put(product, mapper.toResponse(product)));
+            } catch (RuntimeException e) {
+                setPending(null);
+                throw e;
+            }
+
+            lock.writeLock().lock();
+            try {
+                pending.forEach(event -> apply(fresh, event));
+                pending = null;
+                index = fresh;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            log.info("Product search index built with {} products in {} ms",
+                    fresh.size(), (System.nanoTime() - started) / 1_000_000);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            apply(index, event);
+            if (pending != null) {
+                pending.add(event);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void apply(ProductSearchIndex target, ProductChangedEvent event) {
+        if (event.isDelete()) {
+            target.remove(event.productId());
+        } else {
+            target.put(event.current(), mapper.toResponse(event.current()));
+        }
+    }
+
+    private void setPending(List<ProductChangedEvent> events) {
+        lock.writeLock().lock();
+        try {
+            pending = events;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
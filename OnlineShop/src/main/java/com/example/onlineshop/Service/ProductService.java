@@ -2,53 +2,218 @@ package com.example.onlineshop.Service;
 
 import com.example.onlineshop.Entity.Product;
 import com.example.onlineshop.Repository.ProductRepository;
+import com.example.onlineshop.Util.ProductCursor;
+import com.example.onlineshop.Util.ProductCursor.ProductSort;
 import com.example.onlineshop.Util.ProductMapper;
+import com.example.onlineshop.dto.ProductBatchResponseDto;
+import com.example.onlineshop.dto.ProductPageResponseDto;
 import com.example.onlineshop.dto.ProductRequestDto;
 import com.example.onlineshop.dto.ProductResponseDto;
+import com.example.onlineshop.event.ProductChangedEvent;
+import com.example.onlineshop.event.ProductSnapshot;
+import com.example.onlineshop.exception.InvalidRequestException;
 import com.example.onlineshop.exception.ProductNotFoundException;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 public class ProductService {
     private final ProductRepository repository;
     private final ProductMapper mapper;
+    private final ProductCache cache;
+    private final ApplicationEventPublisher events;
+    private final int defaultPageSize;
+    private final int maxPageSize;
+    private final int maxBatchSize;
 
-    public ProductService(ProductRepository repository,ProductMapper mapper){
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public ProductService(ProductRepository repository, ProductMapper mapper,
+                          ProductCache cache, ApplicationEventPublisher events,
+                          @Value("${product.page.default-size:20}") int defaultPageSize,
+                          @Value("${product.page.max-size:100}") int maxPageSize,
+                          @Value("${product.batch.max-size:100}") int maxBatchSize){
         this.repository = repository;
         this.mapper = mapper;
+        this.cache = cache;
+        this.events = events;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+        this.maxBatchSize = maxBatchSize;
     }
 
+    @Transactional
     public ProductResponseDto createProduct(ProductRequestDto request){
         Product product = mapper.toEntity(request);
         Product saved = repository.save(product);
+        events.publishEvent(new ProductChangedEvent(saved.getId(), null, ProductSnapshot.of(saved)));
         return mapper.toResponse(saved);
     }
 
-    public List<ProductResponseDto> getAllProducts(){
-        return repository.findAll().stream()
-                .map(mapper::toResponse)
-                .collect(Collectors.toList());
+    @Transactional(readOnly = true)
+    public ProductPageResponseDto getProductPage(String cursor, Integer size, ProductSort sort){
+        int pageSize = size == null ? defaultPageSize : Math.max(1, Math.min(size, maxPageSize));
+        // one extra row tells us whether there is a next page
+        PageRequest limit = PageRequest.of(0, pageSize + 1);
+
+        List<Product> rows;
+        if (sort == ProductSort.CATEGORY) {
+            rows = cursor == null
+                    ? repository.findFirstCategoryPage(limit)
+                    : nextCategoryPage(ProductCursor.decode(cursor, sort), limit);
+        } else {
+            long afterId = cursor == null ? 0L : ProductCursor.decode(cursor, sort).id();
+            rows = repository.findByIdGreaterThanOrderByIdAsc(afterId, limit);
+        }
+
+        boolean hasMore = rows.size() > pageSize;
+        List<Product> page = hasMore ? rows.subList(0, pageSize) : rows;
+        return ProductPageResponseDto.builder()
+                .items(page.stream().map(mapper::toResponse).toList())
+                .nextCursor(hasMore ? ProductCursor.after(sort, page.get(pageSize - 1)).encode() : null)
+                .build();
+    }
+
+    private List<Product> nextCategoryPage(ProductCursor cursor, PageRequest limit) {
+        return repository.findCategoryPageAfter(cursor.category(), cursor.price(), cursor.id(), limit);
+    }
+
+    /**
+     * Pushes every product to the sink straight off the JDBC cursor. Entities are
+     * detached as soon as they are mapped so the persistence context stays empty
+     * and memory use does not grow with the size of the catalog.
+     */
+    @Transactional(readOnly = true)
+    public void streamProducts(Consumer<ProductResponseDto> sink) {
+        try (Stream<Product> products = repository.streamAllOrderedById()) {
+            products.forEach(product -> {
+                sink.accept(mapper.toResponse(product));
+                entityManager.detach(product);
+            });
+        }
+    }
+
+    /**
+     * Same cursor as streamProducts, for in-memory structures that are built from the whole catalog.
+     */
+    @Transactional(readOnly = true)
+    public void streamSnapshots(Consumer<ProductSnapshot> sink) {
+        try (Stream<Product> products = repository.streamAllOrderedById()) {
+            products.forEach(product -> {
+                sink.accept(ProductSnapshot.of(product));
+                entityManager.detach(product);
+            });
+        }
     }
 
+    // no transaction here: a cache hit must not take a connection
     public ProductResponseDto getProductById(Long id) {
-        return repository.findById(id)
+        ProductResponseDto cached = cache.get(id);
+        if (cached != null) {
+            return cached;
+        }
+
+        long stamp = cache.stamp();
+        ProductResponseDto loaded = repository.findById(id)
                 .map(mapper::toResponse)
                 .orElseThrow(() -> new ProductNotFoundException("Product not found"));
+        cache.putIfCurrent(id, loaded, stamp);
+        return loaded;
+    }
+
+    /**
+     * Products for a list of ids in request order, duplicates dropped. Cached
+     * products are served from the cache and the rest are loaded with one IN
+     * query. Unknown ids are listed as missing instead of failing the batch.
+     */
+    public ProductBatchResponseDto getProductsByIds(List<Long> ids) {
+        LinkedHashSet<Long> requested = new LinkedHashSet<>(ids);
+        // "ids=1,,2" binds an empty entry as null
+        requested.remove(null);
+        if (requested.size() > maxBatchSize) {
+            throw new InvalidRequestException("At most " + maxBatchSize + " ids can be requested at once");
+        }
+
+        Map<Long, ProductResponseDto> found = findAllById(requested);
+        List<ProductResponseDto> items = new ArrayList<>(found.size());
+        List<Long> missing = new ArrayList<>();
+        for (Long id : requested) {
+            ProductResponseDto product = found.get(id);
+            if (product != null) {
+                items.add(product);
+            } else {
+                missing.add(id);
+            }
+        }
+        return ProductBatchResponseDto.builder()
+                .items(items)
+                .missing(missing)
+                .build();
     }
 
+    /**
+     * The known products among ids, from the cache where possible and the rest
+     * with one IN query. Like getProductById it opens no transaction, so ids
+     * that are all cached take no connection.
+     */
+    public Map<Long, ProductResponseDto> findAllById(Collection<Long> ids) {
+        Map<Long, ProductResponseDto> found = new HashMap<>(ids.size() * 2);
+        List<Long> toLoad = new ArrayList<>();
+        for (Long id : ids) {
+            ProductResponseDto cached = cache.get(id);
+            if (cached != null) {
+                found.put(id, cached);
+            } else {
+                toLoad.add(id);
+            }
+        }
+
+        if (!toLoad.isEmpty()) {
+            long stamp = cache.stamp();
+            for (Product product : repository.findAllById(toLoad)) {
+                ProductResponseDto loaded = mapper.toResponse(product);
+                found.put(product.getId(), loaded);
+                cache.putIfCurrent(product.getId(), loaded, stamp);
+            }
+        }
+        return found;
+    }
+
+    @Transactional
     public ProductResponseDto updateProduct(Long id, ProductRequestDto request){
         Product product = repository.findById(id)
                 .orElseThrow(() -> new ProductNotFoundException("Product not found"));
 
+        ProductSnapshot previous = ProductSnapshot.of(product);
         mapper.updateEntity(product,request);
-        return mapper.toResponse(repository.save(product));
+        // flush so the response carries the incremented version
+        Product saved = repository.saveAndFlush(product);
+        events.publishEvent(new ProductChangedEvent(id, previous, ProductSnapshot.of(saved)));
+        return mapper.toResponse(saved);
 
     }
 
+    @Transactional
     public void deleteProduct(Long id){
-        repository.deleteById(id);
+        repository.findById(id).ifPresent(product -> {
+            ProductSnapshot previous = ProductSnapshot.of(product);
+            repository.delete(product);
+            events.publishEvent(new ProductChangedEvent(id, previous, null));
+        });
     }
 }
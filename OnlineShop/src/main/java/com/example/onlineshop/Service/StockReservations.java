@@ -0,0 +1,99 @@
+package com.example.onlineshop.Service;
+
+import com.example.onlineshop.exception.InsufficientStockException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * Takes ordered quantities out of product stock.
+ *
+ * Each line is a conditional decrement that only succeeds while enough stock
+ * is left, so two checkouts can never both take the last unit and no row is
+ * read and locked up front. All lines go out as one JDBC batch, in ascending
+ * product id order so concurrent orders lock shared products in the same
+ * order and cannot deadlock. Must run in the order's transaction: if any
+ * line falls short the exception rolls back the decrements already made
+ * together with the order. The row locks are held from the decrement until
+ * that transaction commits, so callers reserve last, right before saving.
+ *
+ * With stock.hot.enabled, products on the flash sale list are taken from
+ * HotStockCounters instead, first, since they need no row lock at all.
+ */
+@Component
+public class StockReservations {
+
+    // stock is in no response, so the version and updated_at stay and cached bodies and ETags stay valid;
+    // Product is @DynamicUpdate, so an edit that leaves the stock alone does not write it back over this
+    private static final String RESERVE_SQL =
+            "UPDATE products SET stock_quantity = stock_quantity - ? WHERE id = ? AND stock_quantity >= ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    // present with stock.hot.enabled=true
+    private final Optional<HotStockCounters> hotStock;
+
+    public StockReservations(JdbcTemplate jdbcTemplate,
+                             Optional<HotStockCounters> hotStock) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.hotStock = hotStock;
+    }
+
+    /**
+     * Reserves quantity per product id, or throws InsufficientStockException
+     * naming every product that is short.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void reserve(Map<Long, Integer> quantities) {
+        if (quantities.isEmpty()) {
+            return;
+        }
+        TreeMap<Long, Integer> ordered = new TreeMap<>(quantities);
+        List<Long> shortOf = new ArrayList<>();
+        if (hotStock.isPresent()) {
+            // units taken here go back by themselves if a later line falls short
+            HotStockCounters counters = hotStock.get();
+            ordered.entrySet().removeIf(line -> {
+                if (!counters.isHot(line.getKey())) {
+                    return false;
+                }
+                if (!counters.take(line.getKey(), line.getValue())) {
+                    shortOf.add(line.getKey());
+                }
+                return true;
+            });
+        }
+
+        if (!ordered.isEmpty()) {
+            List<Object[]> rows = new ArrayList<>(ordered.size());
+            ordered.forEach((productId, quantity) -> rows.add(new Object[]{quantity, productId, quantity}));
+
+            int[] updated = jdbcTemplate.batchUpdate(RESERVE_SQL, rows);
+
+            int i = 0;
+            for (Long productId : ordered.keySet()) {
+                int count = updated[i++];
+                if (count == Statement.SUCCESS_NO_INFO) {
+                    // a driver that cannot report per-statement counts leaves no way to tell
+                    // which lines were short; throwing rolls back whatever was taken
+                    throw new IllegalStateException(
+                            "JDBC driver returned no update count for the stock reservation of product " + productId);
+                }
+                if (count != 1) {
+                    shortOf.add(productId);
+                }
+            }
+        }
+        if (!shortOf.isEmpty()) {
+            shortOf.sort(null);
+            throw new InsufficientStockException(shortOf);
+        }
+    }
+}
@@ -4,8 +4,10 @@ import com.example.onlineshop.dto.CartItemResponseDto;
 import com.example.onlineshop.dto.CartResponseDto;
 import com.example.onlineshop.Entity.Cart;
 import com.example.onlineshop.Entity.CartItem;
+import com.example.onlineshop.Entity.Product;
 import org.springframework.stereotype.Component;
 
+import java.math.BigDecimal;
 import java.util.stream.Collectors;
 
 @Component
@@ -17,17 +19,27 @@ public class CartMapper {
                 .customerId(cart.getCustomer().getId())
                 .createdAt(cart.getCreatedAt())
                 .updatedAt(cart.getUpdatedAt())
-                .items(cart.getItems().stream()
+                .items(cart.getItems().values().stream()
                         .map(this::toItemResponse)
                         .collect(Collectors.toList()))
+                .totalQuantity(cart.getTotalQuantity())
+                .subtotal(cart.getSubtotal())
                 .build();
     }
 
     private CartItemResponseDto toItemResponse(CartItem item) {
+        BigDecimal price = priceOf(item.getProduct());
         return CartItemResponseDto.builder()
                 .productId(item.getProduct().getId())
                 .productName(item.getProduct().getName())
                 .quantity(item.getQuantity())
+                .unitPrice(price)
+                .lineTotal(price.multiply(BigDecimal.valueOf(item.getQuantity())))
                 .build();
     }
+
+    // a product without a price counts as free in cart totals
+    public static BigDecimal priceOf(Product product) {
+        return product.getPrice() == null ? BigDecimal.ZERO : product.getPrice();
+    }
 }
\ No newline at end of file
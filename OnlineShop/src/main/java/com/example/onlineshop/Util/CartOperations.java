@@ -0,0 +1,73 @@
+package com.example.onlineshop.Util;
+
+import com.example.onlineshop.dto.CartOperationDto;
+import com.example.onlineshop.dto.CartOperationDto.Type;
+import com.example.onlineshop.exception.InvalidRequestException;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Applies a list of cart operations to product quantities, so both cart store
+ * modes share one definition of what ADD, SET and REMOVE mean.
+ */
+public final class CartOperations {
+
+    private CartOperations() {
+    }
+
+    public static void validate(List<CartOperationDto> operations, int maxOperations) {
+        if (operations.size() > maxOperations) {
+            throw new InvalidRequestException("At most " + maxOperations + " operations can be sent at once");
+        }
+        for (int i = 0; i < operations.size(); i++) {
+            CartOperationDto operation = operations.get(i);
+            Integer quantity = operation.getQuantity();
+            if (operation.getOp() == Type.ADD && (quantity == null || quantity < 1)) {
+                throw new InvalidRequestException("operations[" + i + "]: ADD needs a quantity of at least 1");
+            }
+            if (operation.getOp() == Type.SET && (quantity == null || quantity < 0)) {
+                throw new InvalidRequestException("operations[" + i + "]: SET needs a quantity of 0 or more");
+            }
+        }
+    }
+
+    /**
+     * Products the operations may put into the cart, which must exist.
+     */
+    public static Set<Long> productsToCheck(List<CartOperationDto> operations) {
+        Set<Long> ids = new LinkedHashSet<>();
+        for (CartOperationDto operation : operations) {
+            if (operation.getOp() != Type.REMOVE && operation.getQuantity() > 0) {
+                ids.add(operation.getProductId());
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Quantities after applying the operations in order. Existing products keep
+     * their position, new ones are appended, a quantity of zero removes the line.
+     */
+    public static Map<Long, Integer> apply(Map<Long, Integer> quantities, List<CartOperationDto> operations) {
+        Map<Long, Integer> result = new LinkedHashMap<>(quantities);
+        for (CartOperationDto operation : operations) {
+            Long productId = operation.getProductId();
+            switch (operation.getOp()) {
+                case ADD -> result.merge(productId, operation.getQuantity(), Integer::sum);
+                case SET -> {
+                    if (operation.getQuantity() == 0) {
+                        result.remove(productId);
+                    } else {
+                        result.put(productId, operation.getQuantity());
+                    }
+                }
+                case REMOVE -> result.remove(productId);
+            }
+        }
+        return result;
+    }
+}
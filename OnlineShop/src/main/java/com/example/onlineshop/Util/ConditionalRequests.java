@@ -0,0 +1,29 @@
+package com.example.onlineshop.Util;
+
+import org.springframework.web.context.request.WebRequest;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Conditional GET support for single entities carrying a JPA version and a
+ * modification time.
+ */
+public final class ConditionalRequests {
+
+    private ConditionalRequests() {
+    }
+
+    /**
+     * Sets ETag and Last-Modified on the response. Returns true, with the status
+     * already set to 304, when the client's copy is current; the caller then
+     * returns null instead of a body.
+     */
+    public static boolean notModified(WebRequest request, Long version, LocalDateTime updatedAt) {
+        String etag = version == null ? null : "\"" + version + "\"";
+        long lastModified = updatedAt == null
+                ? -1
+                : updatedAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        return request.checkNotModified(etag, lastModified);
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.onlineshop.Util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parses one RFC 4180 style CSV line: comma separated, fields may be wrapped in
+ * double quotes, and a doubled quote inside a quoted field is a literal quote.
+ * Quoted line breaks are not supported, every record must fit on one line.
+ */
+public final class CsvLineParser {
+
+    private CsvLineParser() {
+    }
+
+    public static List<String> parse(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.onlineshop.Util;
+
+import com.example.onlineshop.exception.InvalidRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Opaque continuation token for keyset pagination of a customer's order
+ * history, newest first. Encodes the (created_at, id) of the last order of a
+ * page, so the next page starts right after it without an OFFSET scan.
+ */
+public record OrderCursor(LocalDateTime createdAt, Long id) {
+
+    public String encode() {
+        String raw = createdAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static OrderCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", 2);
+            if (parts.length == 2) {
+                return new OrderCursor(LocalDateTime.parse(parts[0]), Long.parseLong(parts[1]));
+            }
+        } catch (IllegalArgumentException | DateTimeParseException ignored) {
+            // falls through to the invalid cursor error below
+        }
+        throw new InvalidRequestException("Invalid cursor");
+    }
+}
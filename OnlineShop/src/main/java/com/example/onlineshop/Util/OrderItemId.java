@@ -0,0 +1,17 @@
+package com.example.onlineshop.Util;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Generates an order item id with OrderItemIdGenerator.
+ */
+@IdGeneratorType(OrderItemIdGenerator.class)
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.METHOD})
+public @interface OrderItemId {
+}
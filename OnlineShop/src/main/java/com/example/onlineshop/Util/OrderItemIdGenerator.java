@@ -0,0 +1,102 @@
+package com.example.onlineshop.Util;
+
+import com.example.onlineshop.Entity.OrderItem;
+import org.hibernate.HibernateException;
+import org.hibernate.boot.model.relational.SqlStringGenerationContext;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.hibernate.engine.jdbc.spi.JdbcCoordinator;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.OptimizableGenerator;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Properties;
+
+/**
+ * Ids for order_items from order_items_id_seq, in the same pooled-lo blocks
+ * as every other mapping. The plain sequence generator fetches one block per
+ * 50 lines, each its own round trip. When its ids run out, this one fetches
+ * with one query as many blocks as the order being saved still has lines
+ * without an id, so a 1000 line order costs one sequence round trip.
+ * Databases without a row source for that query get the plain behaviour.
+ */
+public class OrderItemIdGenerator extends SequenceStyleGenerator {
+
+    // reserved ids as [next, end) ranges
+    private final Deque<long[]> reserved = new ArrayDeque<>();
+    private String blocksSql;
+
+    @Override
+    public void configure(Type type, Properties parameters, ServiceRegistry serviceRegistry) {
+        parameters.put(SEQUENCE_PARAM, "order_items_id_seq");
+        parameters.put(OptimizableGenerator.INCREMENT_PARAM, String.valueOf(SequenceBlocks.BLOCK_SIZE));
+        parameters.put(OptimizableGenerator.OPT_PARAM, "pooled-lo");
+        super.configure(type, parameters, serviceRegistry);
+    }
+
+    @Override
+    public void initialize(SqlStringGenerationContext context) {
+        super.initialize(context);
+        String sequence = context.format(getDatabaseStructure().getPhysicalName());
+        Dialect dialect = context.getDialect();
+        if (dialect instanceof PostgreSQLDialect) {
+            blocksSql = "SELECT nextval('" + sequence + "') FROM generate_series(1, ?)";
+        } else if (dialect instanceof H2Dialect) {
+            blocksSql = "SELECT NEXT VALUE FOR " + sequence + " FROM SYSTEM_RANGE(1, ?)";
+        }
+    }
+
+    @Override
+    public synchronized Object generate(SharedSessionContractImplementor session, Object object) {
+        if (blocksSql == null) {
+            return super.generate(session, object);
+        }
+        if (reserved.isEmpty()) {
+            reserve(session, linesWithoutId(object));
+        }
+        long[] range = reserved.peek();
+        long id = range[0]++;
+        if (range[0] == range[1]) {
+            reserved.poll();
+        }
+        return id;
+    }
+
+    private static int linesWithoutId(Object object) {
+        if (object instanceof OrderItem item && item.getOrder() != null) {
+            return (int) Math.max(1, item.getOrder().getItems().stream().filter(line -> line.getId() == null).count());
+        }
+        return 1;
+    }
+
+    // the session's own statement handling, the same way the sequence structure reads nextval
+    private void reserve(SharedSessionContractImplementor session, int lines) {
+        JdbcCoordinator jdbc = session.getJdbcCoordinator();
+        PreparedStatement statement = jdbc.getStatementPreparer().prepareStatement(blocksSql);
+        try {
+            statement.setInt(1, (lines + SequenceBlocks.BLOCK_SIZE - 1) / SequenceBlocks.BLOCK_SIZE);
+            ResultSet blocks = jdbc.getResultSetReturn().extract(statement, blocksSql);
+            while (blocks.next()) {
+                long lo = blocks.getLong(1);
+                reserved.add(new long[]{lo, lo + SequenceBlocks.BLOCK_SIZE});
+            }
+        } catch (SQLException e) {
+            throw session.getJdbcServices().getSqlExceptionHelper()
+                    .convert(e, "could not reserve order item ids", blocksSql);
+        } finally {
+            jdbc.getLogicalConnection().getResourceRegistry().release(statement);
+            jdbc.afterStatementExecution();
+        }
+        if (reserved.isEmpty()) {
+            throw new HibernateException("No ids returned from " + blocksSql);
+        }
+    }
+}
@@ -4,9 +4,11 @@ import com.example.onlineshop.dto.OrderItemResponseDto;
 import com.example.onlineshop.dto.OrderResponseDto;
 import com.example.onlineshop.Entity.Order;
 import com.example.onlineshop.Entity.OrderItem;
+import com.example.onlineshop.Repository.OrderItemRepository.OrderLine;
+import com.example.onlineshop.Repository.OrderRepository.OrderSummary;
 import org.springframework.stereotype.Component;
 
-import java.util.stream.Collectors;
+import java.util.List;
 
 @Component
 public class OrderMapper {
@@ -21,6 +23,31 @@ public class OrderMapper {
                 .items(order.getItems().stream()
                         .map(this::toItemResponse)
                         .toList())
+                .version(order.getVersion())
+                .updatedAt(order.getUpdatedAt())
+                .build();
+    }
+
+    // history view, version and updatedAt are only needed for the detail view's ETag
+    public OrderResponseDto toResponse(OrderSummary order, List<OrderLine> lines) {
+        return OrderResponseDto.builder()
+                .id(order.getId())
+                .customerId(order.getCustomerId())
+                .totalAmount(order.getTotalAmount())
+                .status(order.getStatus())
+                .createdAt(order.getCreatedAt())
+                .items(lines.stream()
+                        .map(this::toItemResponse)
+                        .toList())
+                .build();
+    }
+
+    public OrderItemResponseDto toItemResponse(OrderLine line) {
+        return OrderItemResponseDto.builder()
+                .productId(line.getProductId())
+                .productName(line.getProductName())
+                .quantity(line.getQuantity())
+                .priceAtPurchase(line.getPriceAtPurchase())
                 .build();
     }
 
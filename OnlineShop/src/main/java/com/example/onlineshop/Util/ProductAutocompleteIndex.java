@@ -0,0 +1,323 @@
+package com.example.onlineshop.Util;
+
+import com.example.onlineshop.dto.ProductSuggestionDto;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Prefix lookup over product names, returning the most popular matches first.
+ *
+ * The bulk of the data is a static, array-encoded suffix list: one entry per
+ * word start of every normalized name, stored as (product, offset) int pairs
+ * and sorted by the text from that offset on. A prefix maps to one contiguous
+ * range of entries found by binary search, and a segment tree holding the most
+ * popular entry of every node yields the top K of that range without visiting
+ * the rest of it.
+ *
+ * Writes after the build go to a small sorted delta and tombstone the static
+ * entries they replace. Queries merge both parts. The owning service folds the
+ * delta back in by rebuilding from {@link #liveProducts()}.
+ *
+ * Not thread-safe, callers guard it with a read/write lock.
+ */
+public class ProductAutocompleteIndex {
+
+    private final long[] ids;
+    private final String[] names;
+    private final String[] keys;
+    private final Map<Long, Integer> ordinalById;
+
+    private final int[] entryProduct;
+    private final int[] entryOffset;
+    // tree[1] is the root, leaves start at tree[entries]
+    private final int[] tree;
+
+    private final BitSet removed = new BitSet();
+    private final Map<Long, String> deltaNames = new HashMap<>();
+    private final TreeMap<String, Set<Long>> deltaEntries = new TreeMap<>();
+
+    private final Map<Long, Long> popularity;
+
+    private ProductAutocompleteIndex(Map<Long, String> products, Map<Long, Long> popularity) {
+        this.popularity = popularity;
+        int count = products.size();
+        ids = new long[count];
+        names = new String[count];
+        keys = new String[count];
+        ordinalById = new HashMap<>(count * 2);
+
+        List<int[]> entries = new ArrayList<>();
+        int ordinal = 0;
+        for (Map.Entry<Long, String> product : products.entrySet()) {
+            ids[ordinal] = product.getKey();
+            names[ordinal] = product.getValue();
+            keys[ordinal] = normalize(product.getValue());
+            ordinalById.put(product.getKey(), ordinal);
+            for (int offset : wordStarts(keys[ordinal])) {
+                entries.add(new int[]{ordinal, offset});
+            }
+            ordinal++;
+        }
+
+        entries.sort((a, b) -> compareSuffixes(keys[a[0]], a[1], keys[b[0]], b[1]));
+        int size = entries.size();
+        entryProduct = new int[size];
+        entryOffset = new int[size];
+        for (int i = 0; i < size; i++) {
+            entryProduct[i] = entries.get(i)[0];
+            entryOffset[i] = entries.get(i)[1];
+        }
+
+        tree = new int[Math.max(2, size * 2)];
+        for (int i = 0; i < size; i++) {
+            tree[size + i] = i;
+        }
+        for (int node = size - 1; node >= 1; node--) {
+            tree[node] = better(tree[node * 2], tree[node * 2 + 1]);
+        }
+    }
+
+    public static ProductAutocompleteIndex build(Map<Long, String> products, Map<Long, Long> popularity) {
+        return new ProductAutocompleteIndex(products, popularity);
+    }
+
+    public static ProductAutocompleteIndex empty() {
+        return new ProductAutocompleteIndex(Map.of(), Map.of());
+    }
+
+    public void put(Long id, String name) {
+        remove(id);
+        String key = normalize(name);
+        deltaNames.put(id, name);
+        for (int offset : wordStarts(key)) {
+            deltaEntries.computeIfAbsent(key.substring(offset), k -> new HashSet<>()).add(id);
+        }
+    }
+
+    public void remove(Long id) {
+        Integer ordinal = ordinalById.get(id);
+        if (ordinal != null) {
+            removed.set(ordinal);
+        }
+        String previous = deltaNames.remove(id);
+        if (previous != null) {
+            String key = normalize(previous);
+            for (int offset : wordStarts(key)) {
+                Set<Long> owners = deltaEntries.get(key.substring(offset));
+                owners.remove(id);
+                if (owners.isEmpty()) {
+                    deltaEntries.remove(key.substring(offset));
+                }
+            }
+        }
+    }
+
+    public int deltaSize() {
+        return deltaNames.size();
+    }
+
+    public int size() {
+        return ids.length - removed.cardinality() + deltaNames.size();
+    }
+
+    public List<ProductSuggestionDto> suggest(String prefix, int limit) {
+        String query = normalize(prefix);
+        if (query.isEmpty()) {
+            return List.of();
+        }
+
+        List<Candidate> candidates = new ArrayList<>(limit * 2);
+        collectStatic(query, limit, candidates);
+        for (Set<Long> owners : deltaEntries.subMap(query, true, query + Character.MAX_VALUE, false).values()) {
+            for (Long id : owners) {
+                candidates.add(new Candidate(id, deltaNames.get(id), popularity.getOrDefault(id, 0L)));
+            }
+        }
+
+        Map<Long, Candidate> unique = new LinkedHashMap<>();
+        candidates.stream()
+                .sorted(Comparator.comparingLong(Candidate::score).reversed()
+                        .thenComparingInt(c -> c.name().length())
+                        .thenComparingLong(Candidate::id))
+                .forEach(c -> unique.putIfAbsent(c.id(), c));
+        return unique.values().stream()
+                .limit(limit)
+                .map(c -> new ProductSuggestionDto(c.id(), c.name()))
+                .toList();
+    }
+
+    /**
+     * Best-first walk over the matching range: pop the range whose best entry
+     * wins, emit it, push the two halves around it.
+     */
+    private void collectStatic(String query, int limit, List<Candidate> out) {
+        int from = boundary(query, false);
+        int to = boundary(query, true);
+        if (from >= to) {
+            return;
+        }
+
+        PriorityQueue<int[]> ranges = new PriorityQueue<>((a, b) -> a[0] == b[0] ? 0 : better(a[0], b[0]) == a[0] ? -1 : 1);
+        ranges.add(new int[]{argBest(from, to), from, to});
+        Set<Integer> seen = new HashSet<>();
+        while (!ranges.isEmpty() && seen.size() < limit) {
+            int[] range = ranges.poll();
+            int entry = range[0];
+            int ordinal = entryProduct[entry];
+            if (!removed.get(ordinal) && seen.add(ordinal)) {
+                out.add(new Candidate(ids[ordinal], names[ordinal], score(ordinal)));
+            }
+            if (range[1] < entry) {
+                ranges.add(new int[]{argBest(range[1], entry), range[1], entry});
+            }
+            if (entry + 1 < range[2]) {
+                ranges.add(new int[]{argBest(entry + 1, range[2]), entry + 1, range[2]});
+            }
+        }
+    }
+
+    /**
+     * Live products as (id, display name), in a form {@link #build} accepts.
+     */
+    public Map<Long, String> liveProducts() {
+        Map<Long, String> live = new LinkedHashMap<>(size() * 2);
+        for (int ordinal = 0; ordinal < ids.length; ordinal++) {
+            if (!removed.get(ordinal)) {
+                live.put(ids[ordinal], names[ordinal]);
+            }
+        }
+        live.putAll(deltaNames);
+        return live;
+    }
+
+    /**
+     * Approximate retained heap in bytes, counting arrays, strings and map entries.
+     */
+    public long estimatedMemoryBytes() {
+        long bytes = 16L + ids.length * 8L + entryProduct.length * 4L + entryOffset.length * 4L + tree.length * 4L;
+        for (int ordinal = 0; ordinal < ids.length; ordinal++) {
+            bytes += stringBytes(names[ordinal]) + stringBytes(keys[ordinal]);
+        }
+        // HashMap node plus boxed key and value
+        bytes += ordinalById.size() * 64L;
+        bytes += removed.size() / 8;
+        for (Map.Entry<String, Set<Long>> entry : deltaEntries.entrySet()) {
+            bytes += 40 + stringBytes(entry.getKey()) + entry.getValue().size() * 48L;
+        }
+        for (String name : deltaNames.values()) {
+            bytes += 64 + stringBytes(name);
+        }
+        return bytes;
+    }
+
+    private int boundary(String query, boolean upper) {
+        int low = 0;
+        int high = entryProduct.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int cmp = comparePrefix(mid, query);
+            if (cmp < 0 || (upper && cmp == 0)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int argBest(int from, int to) {
+        int n = entryProduct.length;
+        int best = from;
+        for (int l = from + n, r = to + n; l < r; l >>= 1, r >>= 1) {
+            if ((l & 1) == 1) {
+                best = better(best, tree[l++]);
+            }
+            if ((r & 1) == 1) {
+                best = better(best, tree[--r]);
+            }
+        }
+        return best;
+    }
+
+    private int better(int entryA, int entryB) {
+        int a = entryProduct[entryA];
+        int b = entryProduct[entryB];
+        if (a == b) {
+            return Math.min(entryA, entryB);
+        }
+        int cmp = Long.compare(score(b), score(a));
+        if (cmp == 0) {
+            cmp = Integer.compare(names[a].length(), names[b].length());
+        }
+        if (cmp == 0) {
+            cmp = Long.compare(ids[a], ids[b]);
+        }
+        return cmp <= 0 ? entryA : entryB;
+    }
+
+    private long score(int ordinal) {
+        return popularity.getOrDefault(ids[ordinal], 0L);
+    }
+
+    // < 0 if the entry sorts before every match, 0 if it starts with the query, > 0 after
+    private int comparePrefix(int entry, String query) {
+        String key = keys[entryProduct[entry]];
+        int offset = entryOffset[entry];
+        int length = Math.min(key.length() - offset, query.length());
+        for (int i = 0; i < length; i++) {
+            int diff = key.charAt(offset + i) - query.charAt(i);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return key.length() - offset < query.length() ? -1 : 0;
+    }
+
+    private static int compareSuffixes(String a, int offsetA, String b, int offsetB) {
+        int length = Math.min(a.length() - offsetA, b.length() - offsetB);
+        for (int i = 0; i < length; i++) {
+            int diff = a.charAt(offsetA + i) - b.charAt(offsetB + i);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return (a.length() - offsetA) - (b.length() - offsetB);
+    }
+
+    private static String normalize(String text) {
+        return String.join(" ", TextTokenizer.tokenize(text));
+    }
+
+    private static int[] wordStarts(String key) {
+        if (key.isEmpty()) {
+            return new int[0];
+        }
+        int[] starts = new int[key.length()];
+        int count = 0;
+        starts[count++] = 0;
+        for (int i = 1; i < key.length(); i++) {
+            if (key.charAt(i - 1) == ' ') {
+                starts[count++] = i;
+            }
+        }
+        return Arrays.copyOf(starts, count);
+    }
+
+    private static long stringBytes(String value) {
+        return 40L + value.length();
+    }
+
+    private record Candidate(Long id, String name, long score) {
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.onlineshop.Util;
+
+import com.example.onlineshop.Entity.Product;
+import com.example.onlineshop.exception.InvalidRequestException;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque continuation token for keyset pagination of the catalog.
+ * Encodes the sort key of the last row of a page, so the next page
+ * starts right after it without an OFFSET scan. The category sort key of
+ * an uncategorized product is '', as in ProductRepository's queries.
+ */
+public record ProductCursor(ProductSort sort, Long id, BigDecimal price, String category) {
+
+    public static ProductCursor after(ProductSort sort, Product last) {
+        return new ProductCursor(sort, last.getId(), last.getPrice(),
+                last.getCategory() == null ? "" : last.getCategory());
+    }
+
+    public String encode() {
+        String raw = sort == ProductSort.ID
+                ? "id:" + id
+                : "cat:" + id + ":" + price.toPlainString() + ":" + category;
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static ProductCursor decode(String token, ProductSort expectedSort) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split(":", 4);
+            ProductSort sort = "id".equals(parts[0]) ? ProductSort.ID : ProductSort.CATEGORY;
+            if (sort != expectedSort) {
+                throw new InvalidRequestException("Cursor does not match the requested sort");
+            }
+            if (sort == ProductSort.ID && parts.length == 2) {
+                return new ProductCursor(sort, Long.parseLong(parts[1]), null, null);
+            }
+            if (sort == ProductSort.CATEGORY && "cat".equals(parts[0]) && parts.length == 4) {
+                return new ProductCursor(sort, Long.parseLong(parts[1]), new BigDecimal(parts[2]), parts[3]);
+            }
+        } catch (IllegalArgumentException ignored) {
+            // falls through to the invalid cursor error below
+        }
+        throw new InvalidRequestException("Invalid cursor");
+    }
+
+    public enum ProductSort {
+        ID,
+        CATEGORY
+    }
+}
@@ -3,6 +3,7 @@ package com.example.onlineshop.Util;
 import com.example.onlineshop.Entity.Product;
 import com.example.onlineshop.dto.ProductRequestDto;
 import com.example.onlineshop.dto.ProductResponseDto;
+import com.example.onlineshop.event.ProductSnapshot;
 import org.springframework.stereotype.Component;
 
 @Component
@@ -24,6 +25,17 @@ public class ProductMapper {
                 .name(product.getName())
                 .price(product.getPrice())
                 .category(product.getCategory())
+                .version(product.getVersion())
+                .updatedAt(product.getUpdatedAt())
+                .build();
+    }
+
+    public ProductResponseDto toResponse(ProductSnapshot snapshot){
+        return ProductResponseDto.builder()
+                .id(snapshot.id())
+                .name(snapshot.name())
+                .price(snapshot.price())
+                .category(snapshot.category())
                 .build();
     }
 
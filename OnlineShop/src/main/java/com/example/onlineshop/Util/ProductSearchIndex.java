@@ -0,0 +1,221 @@
+package com.example.onlineshop.Util;
+
+import com.example.onlineshop.dto.ProductResponseDto;
+import com.example.onlineshop.event.ProductSnapshot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * In-memory inverted index over product name, description and category,
+ * ranked with BM25.
+ *
+ * Every indexed product gets a dense int document number. Posting lists are
+ * parallel int arrays of document numbers and term frequencies, always sorted
+ * by document number. An update deletes the old document and appends a new
+ * one; deleted documents are skipped at query time and squeezed out by
+ * compact() once they make up a quarter of the index.
+ *
+ * Not thread-safe, callers guard it with a read/write lock.
+ */
+public class ProductSearchIndex {
+
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+    // name matches count double
+    private static final int NAME_WEIGHT = 2;
+
+    private final Map<String, Postings> terms = new HashMap<>();
+    private final Map<Long, Integer> docByProductId = new HashMap<>();
+    private final BitSet deleted = new BitSet();
+
+    private ProductResponseDto[] docs = new ProductResponseDto[1024];
+    private int[] docLengths = new int[1024];
+    private int docCount;
+    private int liveDocs;
+    private int deletedDocs;
+    private long totalLength;
+
+    public void put(ProductSnapshot product, ProductResponseDto response) {
+        remove(product.id());
+
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String token : TextTokenizer.tokenize(product.name())) {
+            frequencies.merge(token, NAME_WEIGHT, Integer::sum);
+        }
+        for (String token : TextTokenizer.tokenize(product.description())) {
+            frequencies.merge(token, 1, Integer::sum);
+        }
+        for (String token : TextTokenizer.tokenize(product.category())) {
+            frequencies.merge(token, 1, Integer::sum);
+        }
+
+        int doc = docCount++;
+        if (doc == docs.length) {
+            docs = Arrays.copyOf(docs, doc * 2);
+            docLengths = Arrays.copyOf(docLengths, doc * 2);
+        }
+        int length = 0;
+        for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+            terms.computeIfAbsent(entry.getKey(), t -> new Postings()).add(doc, entry.getValue());
+            length += entry.getValue();
+        }
+        docs[doc] = response;
+        docLengths[doc] = length;
+        docByProductId.put(product.id(), doc);
+        liveDocs++;
+        totalLength += length;
+    }
+
+    public void remove(Long productId) {
+        Integer doc = docByProductId.remove(productId);
+        if (doc == null) {
+            return;
+        }
+        deleted.set(doc);
+        docs[doc] = null;
+        liveDocs--;
+        deletedDocs++;
+        totalLength -= docLengths[doc];
+        if (deletedDocs > docCount / 4 && docCount > 1024) {
+            compact();
+        }
+    }
+
+    public int size() {
+        return liveDocs;
+    }
+
+    public List<ProductResponseDto> search(String query, int limit) {
+        LinkedHashSet<String> queryTerms = new LinkedHashSet<>(TextTokenizer.tokenize(query));
+        if (queryTerms.isEmpty() || liveDocs == 0) {
+            return List.of();
+        }
+
+        float avgLength = (float) totalLength / liveDocs;
+        float[] scores = new float[docCount];
+        int[] touched = new int[16];
+        int touchedCount = 0;
+
+        for (String term : queryTerms) {
+            Postings postings = terms.get(term);
+            if (postings == null) {
+                continue;
+            }
+            int df = 0;
+            for (int i = 0; i < postings.size; i++) {
+                if (!deleted.get(postings.docs[i])) {
+                    df++;
+                }
+            }
+            if (df == 0) {
+                continue;
+            }
+            float idf = (float) Math.log(1 + (liveDocs - df + 0.5) / (df + 0.5));
+            for (int i = 0; i < postings.size; i++) {
+                int doc = postings.docs[i];
+                if (deleted.get(doc)) {
+                    continue;
+                }
+                int tf = postings.freqs[i];
+                float norm = K1 * (1 - B + B * docLengths[doc] / avgLength);
+                if (scores[doc] == 0) {
+                    if (touchedCount == touched.length) {
+                        touched = Arrays.copyOf(touched, touchedCount * 2);
+                    }
+                    touched[touchedCount++] = doc;
+                }
+                scores[doc] += idf * (tf * (K1 + 1)) / (tf + norm);
+            }
+        }
+
+        // min-heap holding the best `limit` documents seen so far, ties go to the older one
+        PriorityQueue<Integer> top = new PriorityQueue<>(limit + 1, (a, b) -> scores[a] != scores[b]
+                ? Float.compare(scores[a], scores[b])
+                : Integer.compare(b, a));
+        for (int i = 0; i < touchedCount; i++) {
+            top.add(touched[i]);
+            if (top.size() > limit) {
+                top.poll();
+            }
+        }
+
+        ProductResponseDto[] result = new ProductResponseDto[top.size()];
+        for (int i = result.length - 1; i >= 0; i--) {
+            result[i] = docs[top.poll()];
+        }
+        return Arrays.asList(result);
+    }
+
+    /**
+     * Renumbers live documents densely and drops deleted entries from every
+     * posting list. The mapping is monotonic so posting lists stay sorted.
+     */
+    public void compact() {
+        int[] remap = new int[docCount];
+        int next = 0;
+        for (int doc = 0; doc < docCount; doc++) {
+            remap[doc] = deleted.get(doc) ? -1 : next++;
+        }
+
+        List<String> emptyTerms = new ArrayList<>();
+        for (Map.Entry<String, Postings> entry : terms.entrySet()) {
+            entry.getValue().remap(remap);
+            if (entry.getValue().size == 0) {
+                emptyTerms.add(entry.getKey());
+            }
+        }
+        emptyTerms.forEach(terms::remove);
+
+        ProductResponseDto[] newDocs = new ProductResponseDto[Math.max(1024, next * 2)];
+        int[] newLengths = new int[newDocs.length];
+        for (int doc = 0; doc < docCount; doc++) {
+            if (remap[doc] >= 0) {
+                newDocs[remap[doc]] = docs[doc];
+                newLengths[remap[doc]] = docLengths[doc];
+            }
+        }
+        docByProductId.replaceAll((productId, doc) -> remap[doc]);
+
+        docs = newDocs;
+        docLengths = newLengths;
+        docCount = next;
+        deletedDocs = 0;
+        deleted.clear();
+    }
+
+    private static final class Postings {
+        private int[] docs = new int[4];
+        private int[] freqs = new int[4];
+        private int size;
+
+        void add(int doc, int freq) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                freqs = Arrays.copyOf(freqs, size * 2);
+            }
+            docs[size] = doc;
+            freqs[size] = freq;
+            size++;
+        }
+
+        void remap(int[] remap) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                int doc = remap[docs[i]];
+                if (doc >= 0) {
+                    docs[kept] = doc;
+                    freqs[kept] = freqs[i];
+                    kept++;
+                }
+            }
+            size = kept;
+        }
+    }
+}
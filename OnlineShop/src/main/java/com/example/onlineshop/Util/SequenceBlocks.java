@@ -0,0 +1,38 @@
+package com.example.onlineshop.Util;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Hands out entity ids to plain JDBC inserts using the same pooled-lo scheme
+ * as the Hibernate mappings: every nextval reserves a block of BLOCK_SIZE ids
+ * starting at the returned value. One round trip covers a whole batch.
+ */
+@Component
+public class SequenceBlocks {
+
+    // must match allocationSize on the entity mappings and INCREMENT BY on the sequences
+    public static final int BLOCK_SIZE = 50;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public SequenceBlocks(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public long[] next(String sequence, int count) {
+        if (count == 0) {
+            return new long[0];
+        }
+        List<Long> blocks = jdbcTemplate.queryForList(
+                "SELECT nextval('" + sequence + "') FROM generate_series(1, ?)", Long.class,
+                (count + BLOCK_SIZE - 1) / BLOCK_SIZE);
+        long[] ids = new long[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = blocks.get(i / BLOCK_SIZE) + i % BLOCK_SIZE;
+        }
+        return ids;
+    }
+}
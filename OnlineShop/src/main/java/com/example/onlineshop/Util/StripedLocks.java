@@ -0,0 +1,34 @@
+package com.example.onlineshop.Util;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A fixed set of locks shared by hashing the key, so memory stays constant
+ * however many keys there are. Two keys can share a stripe and then wait for
+ * each other; the same key always maps to the same lock.
+ */
+public final class StripedLocks {
+
+    private final ReentrantLock[] stripes;
+
+    public StripedLocks(int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("At least one stripe is needed");
+        }
+        stripes = new ReentrantLock[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    public ReentrantLock get(Object key) {
+        int hash = key.hashCode();
+        // spread the high bits, sequential ids would otherwise only use the low stripes in order
+        hash ^= hash >>> 16;
+        return stripes[Math.floorMod(hash, stripes.length)];
+    }
+
+    public int size() {
+        return stripes.length;
+    }
+}
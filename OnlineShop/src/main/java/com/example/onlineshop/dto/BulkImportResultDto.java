@@ -0,0 +1,25 @@
+package com.example.onlineshop.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class BulkImportResultDto {
+    private long received;
+    private long imported;
+    private long failed;
+    private long elapsedMillis;
+    // capped at product.import.max-reported-errors, failed has the full count
+    private List<RowError> errors;
+
+    @Data
+    @AllArgsConstructor
+    public static class RowError {
+        private long line;
+        private String message;
+    }
+}
@@ -3,10 +3,14 @@ package com.example.onlineshop.dto;
 import lombok.Builder;
 import lombok.Data;
 
+import java.math.BigDecimal;
+
 @Data
 @Builder
 public class CartItemResponseDto {
     private Long productId;
     private String productName;
     private int quantity;
+    private BigDecimal unitPrice;
+    private BigDecimal lineTotal;
 }
\ No newline at end of file
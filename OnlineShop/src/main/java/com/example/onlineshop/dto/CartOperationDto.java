@@ -0,0 +1,27 @@
+package com.example.onlineshop.dto;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartOperationDto {
+
+    @NotNull(message = "Operation type is required")
+    private Type op;
+
+    @NotNull(message = "Product ID is required")
+    private Long productId;
+
+    // ADD: how many to add (at least 1). SET: the new quantity, 0 removes. REMOVE: ignored
+    private Integer quantity;
+
+    public enum Type {
+        ADD,
+        SET,
+        REMOVE
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.onlineshop.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartOperationsRequestDto {
+
+    // applied in this order
+    @NotEmpty(message = "At least one operation is required")
+    private List<@Valid @NotNull CartOperationDto> operations;
+}
@@ -3,6 +3,7 @@ package com.example.onlineshop.dto;
 import lombok.Builder;
 import lombok.Data;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -12,6 +13,8 @@ public class CartResponseDto {
     private Long id;
     private Long customerId;
     private List<CartItemResponseDto> items;
+    private int totalQuantity;
+    private BigDecimal subtotal;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 }
\ No newline at end of file
@@ -1,14 +1,19 @@
 package com.example.onlineshop.dto;
 
 import com.example.onlineshop.Entity.OrderStatus;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
 
 @Data
+@NoArgsConstructor
+@AllArgsConstructor
 @Builder
 public class OrderResponseDto {
     private Long id;
@@ -17,4 +22,10 @@ public class OrderResponseDto {
     private OrderStatus status;
     private LocalDateTime createdAt;
     private List<OrderItemResponseDto> items;
+
+    // sent as ETag and Last-Modified headers, not in the body
+    @JsonIgnore
+    private Long version;
+    @JsonIgnore
+    private LocalDateTime updatedAt;
 }
\ No newline at end of file
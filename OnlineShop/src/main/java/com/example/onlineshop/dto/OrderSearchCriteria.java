@@ -0,0 +1,21 @@
+package com.example.onlineshop.dto;
+
+import com.example.onlineshop.Entity.OrderStatus;
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// every filter is optional, the ones given are combined with AND
+@Data
+@Builder
+public class OrderSearchCriteria {
+    private OrderStatus status;
+    private Long customerId;
+    // created at or after
+    private LocalDateTime from;
+    // created before
+    private LocalDateTime to;
+    private BigDecimal minTotal;
+}
@@ -0,0 +1,16 @@
+package com.example.onlineshop.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+@Data
+@AllArgsConstructor
+public class PriceBucketDto {
+    // inclusive
+    private BigDecimal from;
+    // exclusive, null for the open-ended last bucket
+    private BigDecimal to;
+    private long count;
+}
@@ -0,0 +1,17 @@
+package com.example.onlineshop.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductBatchRequestDto {
+
+    @NotEmpty(message = "At least one id is required")
+    private List<@NotNull(message = "Ids cannot be null") Long> ids;
+}
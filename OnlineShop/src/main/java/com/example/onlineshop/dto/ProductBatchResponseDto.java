@@ -0,0 +1,15 @@
+package com.example.onlineshop.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class ProductBatchResponseDto {
+    // found products, in the order they were requested
+    private List<ProductResponseDto> items;
+    // requested ids with no product
+    private List<Long> missing;
+}
@@ -0,0 +1,18 @@
+package com.example.onlineshop.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Builder
+public class ProductFacetsResponseDto {
+    private long total;
+    private Map<String, Long> categories;
+    // products without a category, not part of categories
+    private long uncategorized;
+    // for the requested category, or the whole catalog when none was given
+    private List<PriceBucketDto> priceHistogram;
+}
@@ -0,0 +1,14 @@
+package com.example.onlineshop.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class ProductPageResponseDto {
+    private List<ProductResponseDto> items;
+    // opaque token for the next page, null when this is the last page
+    private String nextCursor;
+}
@@ -1,8 +1,10 @@
 package com.example.onlineshop.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.*;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 
 @Getter
 @Setter
@@ -14,4 +16,10 @@ public class ProductResponseDto {
     private String name;
     private BigDecimal price;
     private String category;
+
+    // sent as ETag and Last-Modified headers, not in the body
+    @JsonIgnore
+    private Long version;
+    @JsonIgnore
+    private LocalDateTime updatedAt;
 }
@@ -0,0 +1,11 @@
+package com.example.onlineshop.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class ProductSuggestionDto {
+    private Long id;
+    private String name;
+}
@@ -0,0 +1,18 @@
+package com.example.onlineshop.event;
+
+/**
+ * Published by ProductService for every product write. previous is null for a
+ * create and current is null for a delete. Listeners that keep derived state
+ * (caches, indexes) should use @TransactionalEventListener so they only see
+ * committed changes.
+ */
+public record ProductChangedEvent(Long productId, ProductSnapshot previous, ProductSnapshot current) {
+
+    public boolean isCreate() {
+        return previous == null;
+    }
+
+    public boolean isDelete() {
+        return current == null;
+    }
+}
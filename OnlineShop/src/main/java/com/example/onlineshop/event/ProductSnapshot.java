@@ -0,0 +1,27 @@
+package com.example.onlineshop.event;
+
+import com.example.onlineshop.Entity.Product;
+
+import java.math.BigDecimal;
+
+/**
+ * Immutable copy of a product's state, taken inside the writing transaction
+ * so listeners never touch a managed entity.
+ */
+public record ProductSnapshot(Long id,
+                              String name,
+                              String description,
+                              String category,
+                              BigDecimal price,
+                              Integer stockQuantity) {
+
+    public static ProductSnapshot of(Product product) {
+        return new ProductSnapshot(
+                product.getId(),
+                product.getName(),
+                product.getDescription(),
+                product.getCategory(),
+                product.getPrice(),
+                product.getStockQuantity());
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.onlineshop.event;
+
+/**
+ * Published once a bulk import has committed all its batches. Rows inserted
+ * in bulk do not get individual ProductChangedEvents, so in-memory views of
+ * the catalog rebuild from the database instead.
+ */
+public record ProductsImportedEvent(long imported) {
+}
@@ -1,5 +1,7 @@
 package com.example.onlineshop.exception;
 
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -23,6 +25,49 @@ public class GlobalExceptionHandler {
                 ));
     }
 
+    @ExceptionHandler(InvalidRequestException.class)
+    public ResponseEntity<Map<String,Object>> handleInvalidRequest(InvalidRequestException ex){
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(Map.of("timestamp", LocalDateTime.now(),
+                        "status", HttpStatus.BAD_REQUEST.value(),
+                        "error", "Bad Request",
+                        "message", ex.getMessage()
+                ));
+    }
+
+    @ExceptionHandler(InsufficientStockException.class)
+    public ResponseEntity<Map<String,Object>> handleInsufficientStock(InsufficientStockException ex){
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(Map.of("timestamp", LocalDateTime.now(),
+                        "status", HttpStatus.CONFLICT.value(),
+                        "error", "Insufficient Stock",
+                        "message", ex.getMessage(),
+                        "productIds", ex.getProductIds()
+                ));
+    }
+
+    @ExceptionHandler(OrderBacklogException.class)
+    public ResponseEntity<Map<String,Object>> handleOrderBacklog(OrderBacklogException ex){
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(Map.of("timestamp", LocalDateTime.now(),
+                        "status", HttpStatus.SERVICE_UNAVAILABLE.value(),
+                        "error", "Service Unavailable",
+                        "message", ex.getMessage()
+                ));
+    }
+
+    // still conflicting after the service's own retries
+    @ExceptionHandler(ConcurrencyFailureException.class)
+    public ResponseEntity<Map<String,Object>> handleConflict(ConcurrencyFailureException ex){
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(Map.of("timestamp", LocalDateTime.now(),
+                        "status", HttpStatus.CONFLICT.value(),
+                        "error", "Conflict",
+                        "message", "The resource was changed by another request, please try again"
+                ));
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<Map<String,Object>> handleGeneric(Exception ex){
         return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -0,0 +1,21 @@
+package com.example.onlineshop.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.util.List;
+
+@ResponseStatus(HttpStatus.CONFLICT)
+public class InsufficientStockException extends RuntimeException {
+
+    private final List<Long> productIds;
+
+    public InsufficientStockException(List<Long> productIds) {
+        super("Insufficient stock for products " + productIds);
+        this.productIds = List.copyOf(productIds);
+    }
+
+    public List<Long> getProductIds() {
+        return productIds;
+    }
+}
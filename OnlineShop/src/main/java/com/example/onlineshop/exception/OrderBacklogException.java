@@ -0,0 +1,19 @@
+package com.example.onlineshop.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class OrderBacklogException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public OrderBacklogException(long retryAfterSeconds) {
+        super("Too many orders are waiting to be processed, try again shortly");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
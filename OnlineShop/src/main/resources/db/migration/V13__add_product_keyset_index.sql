@@ -0,0 +1,2 @@
+-- supports keyset pagination of the catalog ordered by (category, price, id)
+CREATE INDEX idx_products_category_price_id ON products (category, price, id);
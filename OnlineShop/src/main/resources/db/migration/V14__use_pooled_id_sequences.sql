@@ -0,0 +1,28 @@
+-- Entity ids come from sequences in blocks of 50 (pooled-lo) instead of one
+-- IDENTITY round trip per row, which lets Hibernate batch inserts.
+-- Column defaults keep working for plain SQL inserts; each such insert just
+-- skips ahead one block.
+
+ALTER TABLE products ALTER COLUMN id TYPE BIGINT;
+ALTER SEQUENCE products_id_seq AS BIGINT;
+
+ALTER SEQUENCE products_id_seq INCREMENT BY 50;
+ALTER SEQUENCE customers_id_seq INCREMENT BY 50;
+ALTER SEQUENCE orders_id_seq INCREMENT BY 50;
+ALTER SEQUENCE order_items_id_seq INCREMENT BY 50;
+ALTER SEQUENCE carts_id_seq INCREMENT BY 50;
+ALTER SEQUENCE cart_items_id_seq INCREMENT BY 50;
+ALTER SEQUENCE roles_id_seq INCREMENT BY 50;
+ALTER SEQUENCE users_id_seq INCREMENT BY 50;
+ALTER SEQUENCE refresh_tokens_id_seq INCREMENT BY 50;
+
+-- pooled-lo hands out [nextval, nextval + 49], so the next value must be above every existing id
+SELECT setval('products_id_seq', (SELECT COALESCE(MAX(id), 0) + 1 FROM products), false);
+SELECT setval('customers_id_seq', (SELECT COALESCE(MAX(id), 0) + 1 FROM customers), false);
+SELECT setval('orders_id_seq', (SELECT COALESCE(MAX(id), 0) + 1 FROM orders), false);
+SELECT setval('order_items_id_seq', (SELECT COALESCE(MAX(id), 0) + 1 FROM order_items), false);
+SELECT setval('carts_id_seq', (SELECT COALESCE(MAX(id), 0) + 1 FROM carts), false);
+SELECT setval('cart_items_id_seq', (SELECT COALESCE(MAX(id), 0) + 1 FROM cart_items), false);
+SELECT setval('roles_id_seq', (SELECT COALESCE(MAX(id), 0) + 1 FROM roles), false);
+SELECT setval('users_id_seq', (SELECT COALESCE(MAX(id), 0) + 1 FROM users), false);
+SELECT setval('refresh_tokens_id_seq', (SELECT COALESCE(MAX(id), 0) + 1 FROM refresh_tokens), false);
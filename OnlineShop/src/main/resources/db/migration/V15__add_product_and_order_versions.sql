@@ -0,0 +1,8 @@
+-- Optimistic lock versions and modification times, used for ETag and Last-Modified headers
+ALTER TABLE products
+    ADD COLUMN version BIGINT NOT NULL DEFAULT 0,
+    ADD COLUMN updated_at TIMESTAMP NOT NULL DEFAULT now();
+
+ALTER TABLE orders
+    ADD COLUMN version BIGINT NOT NULL DEFAULT 0,
+    ADD COLUMN updated_at TIMESTAMP NOT NULL DEFAULT now();
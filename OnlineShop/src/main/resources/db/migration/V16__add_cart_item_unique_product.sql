@@ -0,0 +1,17 @@
+-- fold duplicate lines left by concurrent adds into the oldest one
+UPDATE cart_items keep
+SET quantity = dup.total
+FROM (SELECT MIN(id) AS id, SUM(quantity) AS total
+      FROM cart_items
+      GROUP BY cart_id, product_id
+      HAVING COUNT(*) > 1) dup
+WHERE keep.id = dup.id;
+
+DELETE FROM cart_items extra
+USING cart_items keep
+WHERE extra.cart_id = keep.cart_id
+  AND extra.product_id = keep.product_id
+  AND extra.id > keep.id;
+
+-- one line per product in a cart, also the conflict target of the add-to-cart upsert
+CREATE UNIQUE INDEX uq_cart_items_cart_product ON cart_items (cart_id, product_id);
@@ -0,0 +1,3 @@
+-- optimistic lock version, concurrent cart updates fail and retry instead of overwriting each other
+ALTER TABLE carts
+    ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
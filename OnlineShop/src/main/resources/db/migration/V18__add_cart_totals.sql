@@ -0,0 +1,18 @@
+-- cart totals kept up to date by every cart change instead of summed on read
+ALTER TABLE carts
+    ADD COLUMN subtotal NUMERIC(14, 2) NOT NULL DEFAULT 0,
+    ADD COLUMN total_quantity INT NOT NULL DEFAULT 0;
+
+UPDATE carts c
+SET subtotal = t.subtotal,
+    total_quantity = t.total_quantity
+FROM (SELECT ci.cart_id,
+             SUM(ci.quantity * COALESCE(p.price, 0)) AS subtotal,
+             SUM(ci.quantity) AS total_quantity
+      FROM cart_items ci
+               JOIN products p ON p.id = ci.product_id
+      GROUP BY ci.cart_id) t
+WHERE c.id = t.cart_id;
+
+-- reverse index from a product to the cart lines holding it, a price change reprices only those carts
+CREATE INDEX idx_cart_items_product ON cart_items (product_id);
@@ -0,0 +1,7 @@
+-- ledger behind the in-memory flash sale counters, one row per hot product
+CREATE TABLE hot_stock_allotments (
+    product_id    BIGINT PRIMARY KEY,
+    allotted      INT       NOT NULL,
+    reconciled_at TIMESTAMP NOT NULL,
+    CONSTRAINT fk_hot_stock_allotments_product FOREIGN KEY (product_id) REFERENCES products (id) ON DELETE CASCADE
+);
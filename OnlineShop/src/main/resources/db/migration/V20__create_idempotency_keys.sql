@@ -0,0 +1,13 @@
+-- responses of requests sent with an Idempotency-Key, replayed when the key comes again
+CREATE TABLE idempotency_keys (
+    scope       VARCHAR(64)  NOT NULL,
+    idem_key    VARCHAR(100) NOT NULL,
+    fingerprint VARCHAR(64)  NOT NULL,
+    response    TEXT         NOT NULL,
+    created_at  TIMESTAMP    NOT NULL,
+    expires_at  TIMESTAMP    NOT NULL,
+    CONSTRAINT pk_idempotency_keys PRIMARY KEY (scope, idem_key)
+);
+
+-- the purge walks expired keys oldest first
+CREATE INDEX idx_idempotency_keys_expires_at ON idempotency_keys (expires_at);
@@ -0,0 +1,18 @@
+-- post-order work, written with the order and drained by OrderOutboxDispatcher
+CREATE SEQUENCE order_outbox_id_seq AS BIGINT INCREMENT BY 50;
+
+CREATE TABLE order_outbox (
+    id              BIGINT PRIMARY KEY DEFAULT nextval('order_outbox_id_seq'),
+    order_id        BIGINT       NOT NULL,
+    created_at      TIMESTAMP    NOT NULL,
+    attempts        INT          NOT NULL DEFAULT 0,
+    next_attempt_at TIMESTAMP    NOT NULL,
+    last_error      VARCHAR(500),
+    CONSTRAINT fk_order_outbox_order FOREIGN KEY (order_id) REFERENCES orders (id) ON DELETE CASCADE
+);
+
+-- the dispatcher claims due rows in this order
+CREATE INDEX idx_order_outbox_next_attempt_at ON order_outbox (next_attempt_at);
+
+-- set once by the idempotent confirmation handler
+ALTER TABLE orders ADD COLUMN confirmation_sent_at TIMESTAMP;
@@ -0,0 +1,5 @@
+-- supports keyset pagination of a customer's orders, newest first by (created_at, id)
+CREATE INDEX idx_orders_customer_created_id ON orders (customer_id, created_at DESC, id DESC);
+
+-- the lines of one history page are loaded by order_id
+CREATE INDEX idx_order_items_order ON order_items (order_id);
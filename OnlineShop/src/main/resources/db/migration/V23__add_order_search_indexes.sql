@@ -0,0 +1,11 @@
+-- admin order search (OrderSearchService): whatever the filters, one of these
+-- or idx_orders_customer_created_id returns the rows already in (created_at, id) order
+
+-- no status or customer filter, only a date range and/or a minimum total
+CREATE INDEX idx_orders_created_id ON orders (created_at DESC, id DESC);
+
+-- filtered by status
+CREATE INDEX idx_orders_status_created_id ON orders (status, created_at DESC, id DESC);
+
+-- pending orders are what ops search for most and a small share of the table
+CREATE INDEX idx_orders_pending_created_id ON orders (created_at DESC, id DESC) WHERE status = 'PENDING';
@@ -0,0 +1,4 @@
+-- the category keyset pages sort uncategorized products as category '', so
+-- the index has to be on that expression for the pages to use it
+DROP INDEX idx_products_category_price_id;
+CREATE INDEX idx_products_category_key_price_id ON products ((COALESCE(category, '')), price, id);
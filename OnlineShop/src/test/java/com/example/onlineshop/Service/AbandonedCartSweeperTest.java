@@ -0,0 +1,86 @@
+package com.example.onlineshop.Service;
+
+import com.example.onlineshop.Entity.*;
+import com.example.onlineshop.Repository.CartRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Stale carts and their lines go in bounded batches; recently changed carts stay.
+ */
+@ServiceSliceTest
+@TestPropertySource(properties = {"cart.sweeper.max-age=P7D", "cart.sweeper.batch-size=2", "cart.sweeper.pause=PT0S"})
+@Import(AbandonedCartSweeper.class)
+class AbandonedCartSweeperTest {
+
+    private static final int STALE = 5;
+
+    @Autowired
+    private ShopFixture fixture;
+    @Autowired
+    private TestEntityManager em;
+    @Autowired
+    private AbandonedCartSweeper sweeper;
+    @Autowired
+    private CartRepository cartRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final List<Long> fresh = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        Product product = fixture.product("Product", 100);
+        for (int i = 0; i < STALE + 2; i++) {
+            Customer customer = fixture.customer("buyer" + i);
+            LocalDateTime updatedAt = i < STALE ? LocalDateTime.now().minusDays(30) : LocalDateTime.now().minusDays(1);
+            Cart cart = Cart.builder()
+                    .customer(customer)
+                    .createdAt(updatedAt)
+                    .updatedAt(updatedAt)
+                    .build();
+            cart.getItems().put(product.getId(), CartItem.builder().cart(cart).product(product).quantity(1).build());
+            em.persist(cart);
+            if (i >= STALE) {
+                fresh.add(cart.getId());
+            }
+        }
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    void sweepsOnlyStaleCartsWithTheirLines() {
+        long cartsBefore = sweeper.cartsPurgedCount();
+        long itemsBefore = sweeper.itemsPurgedCount();
+
+        sweeper.sweep();
+
+        assertEquals(fresh, cartRepository.findAll().stream().map(Cart::getId).sorted().toList());
+        assertEquals(fresh.size(), jdbcTemplate.queryForObject("SELECT COUNT(*) FROM cart_items", Integer.class));
+        assertEquals(STALE, sweeper.cartsPurgedCount() - cartsBefore);
+        assertEquals(STALE, sweeper.itemsPurgedCount() - itemsBefore);
+    }
+
+    @Test
+    void secondRunFindsNothing() {
+        sweeper.sweep();
+        long cartsBefore = sweeper.cartsPurgedCount();
+
+        sweeper.sweep();
+
+        assertEquals(cartsBefore, sweeper.cartsPurgedCount());
+        assertEquals(fresh.size(), cartRepository.count());
+    }
+}
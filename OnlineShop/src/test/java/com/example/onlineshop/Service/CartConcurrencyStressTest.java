@@ -0,0 +1,138 @@
+package com.example.onlineshop.Service;
+
+import com.example.onlineshop.Entity.*;
+import com.example.onlineshop.Repository.*;
+import com.example.onlineshop.Util.CartMapper;
+import com.example.onlineshop.Util.OrderMapper;
+import com.example.onlineshop.dto.CartItemResponseDto;
+import com.example.onlineshop.dto.CartOperationDto;
+import com.example.onlineshop.dto.CartOperationDto.Type;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Many threads adding to the same cart at once, each call committing on its
+ * own. Every add must be reflected in the final quantity.
+ */
+@CommittingServiceSliceTest
+@TestPropertySource(properties = {"cart.locks.enabled=false", "cart.update.max-attempts=100"})
+class CartConcurrencyStressTest {
+
+    private static final int THREADS = 8;
+    private static final int ADDS_PER_THREAD = 25;
+
+    @Autowired
+    private ShopFixture fixture;
+    @Autowired
+    private CartService cartService;
+    @Autowired
+    private CartUpdateRunner cartUpdates;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private CartRepository cartRepository;
+    @Autowired
+    private CartItemRepository cartItemRepository;
+    @Autowired
+    private CustomerRepository customerRepository;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private OrderRepository orderRepository;
+    @Autowired
+    private CartMapper cartMapper;
+    @Autowired
+    private OrderMapper orderMapper;
+    @Autowired
+    private StockReservations stockReservations;
+    @Autowired
+    private IdempotencyKeys idempotencyKeys;
+    @Autowired
+    private OrderOutbox orderOutbox;
+
+    private Long customerId;
+    private Long productId;
+
+    @BeforeEach
+    void setUp() {
+        Customer customer = fixture.customer();
+        fixture.cart(customer);
+        customerId = customer.getId();
+        productId = fixture.product("Product", 100).getId();
+    }
+
+    @AfterEach
+    void tearDown() {
+        fixture.deleteAll();
+    }
+
+    @Test
+    void versionRetriesLoseNoUpdates() throws Exception {
+        long retriesBefore = cartUpdates.retryCount();
+
+        hammer(cartService);
+
+        assertEquals(THREADS * ADDS_PER_THREAD, quantity());
+        // the adds really did collide, so the retries were exercised
+        assertTrue(cartUpdates.retryCount() > retriesBefore);
+    }
+
+    @Test
+    void stripedLockSerializesTheSameCart() throws Exception {
+        // a single attempt: any conflict the lock lets through would fail the call
+        CartUpdateRunner locked = new CartUpdateRunner(transactionTemplate, 1, true, 4);
+        CartService service = new CartService(cartRepository, cartItemRepository, customerRepository,
+                productRepository, orderRepository, cartMapper, orderMapper, Optional.empty(), locked,
+                stockReservations, idempotencyKeys, orderOutbox, 200);
+
+        hammer(service);
+
+        assertEquals(THREADS * ADDS_PER_THREAD, quantity());
+        assertEquals(0, locked.retryCount());
+    }
+
+    private void hammer(CartService service) throws Exception {
+        List<CartOperationDto> add = List.of(new CartOperationDto(Type.ADD, productId, 1));
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < ADDS_PER_THREAD; i++) {
+                        service.applyOperations(customerId, add);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> result : results) {
+                result.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private int quantity() {
+        List<CartItemResponseDto> items = cartService.getCart(customerId).getItems();
+        assertEquals(1, items.size());
+        return items.get(0).getQuantity();
+    }
+}
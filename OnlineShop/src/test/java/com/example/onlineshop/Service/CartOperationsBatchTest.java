@@ -0,0 +1,133 @@
+package com.example.onlineshop.Service;
+
+import com.example.onlineshop.Entity.*;
+import com.example.onlineshop.dto.CartItemResponseDto;
+import com.example.onlineshop.dto.CartOperationDto;
+import com.example.onlineshop.dto.CartOperationDto.Type;
+import com.example.onlineshop.dto.CartResponseDto;
+import com.example.onlineshop.exception.InvalidRequestException;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Batch cart operations: applied in order, all or nothing, and with one
+ * product lookup however many operations the batch holds.
+ */
+@ServiceSliceTest
+class CartOperationsBatchTest {
+
+    private static final int PRODUCTS = 10;
+
+    @Autowired
+    private ShopFixture fixture;
+    @Autowired
+    private TestEntityManager em;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private CartService cartService;
+
+    private Statistics statistics;
+    private Customer customer;
+    private final List<Product> products = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        customer = fixture.customer();
+        for (int i = 0; i < PRODUCTS; i++) {
+            products.add(fixture.product("Product " + i, BigDecimal.valueOf(10 + i), 100));
+        }
+
+        Cart cart = Cart.builder()
+                .customer(customer)
+                .createdAt(LocalDateTime.now())
+                .updatedAt(LocalDateTime.now())
+                .build();
+        cart.getItems().put(products.get(0).getId(), CartItem.builder().cart(cart).product(products.get(0)).quantity(1).build());
+        cart.getItems().put(products.get(1).getId(), CartItem.builder().cart(cart).product(products.get(1)).quantity(2).build());
+        em.persist(cart);
+        em.flush();
+        em.clear();
+    }
+
+    private CartOperationDto op(Type type, int product, Integer quantity) {
+        return new CartOperationDto(type, products.get(product).getId(), quantity);
+    }
+
+    @Test
+    void operationsApplyInOrder() {
+        CartResponseDto cart = cartService.applyOperations(customer.getId(), List.of(
+                op(Type.ADD, 0, 2),
+                op(Type.REMOVE, 1, null),
+                op(Type.ADD, 2, 1),
+                op(Type.SET, 2, 5),
+                op(Type.SET, 3, 4),
+                op(Type.SET, 3, 0)));
+
+        assertEquals(List.of(products.get(0).getId(), products.get(2).getId()),
+                cart.getItems().stream().map(CartItemResponseDto::getProductId).toList());
+        assertEquals(List.of(3, 5), cart.getItems().stream().map(CartItemResponseDto::getQuantity).toList());
+
+        em.flush();
+        em.clear();
+        assertEquals(2, cartService.getCart(customer.getId()).getItems().size());
+    }
+
+    @Test
+    void unknownProductRejectsTheWholeBatch() {
+        List<CartOperationDto> operations = List.of(
+                op(Type.ADD, 2, 1),
+                new CartOperationDto(Type.ADD, -1L, 1));
+
+        InvalidRequestException error = assertThrows(InvalidRequestException.class,
+                () -> cartService.applyOperations(customer.getId(), operations));
+        assertTrue(error.getMessage().contains("-1"));
+
+        em.flush();
+        em.clear();
+        CartResponseDto cart = cartService.getCart(customer.getId());
+        assertEquals(List.of(1, 2), cart.getItems().stream().map(CartItemResponseDto::getQuantity).toList());
+    }
+
+    @Test
+    void invalidQuantityNamesTheOperation() {
+        InvalidRequestException error = assertThrows(InvalidRequestException.class,
+                () -> cartService.applyOperations(customer.getId(), List.of(op(Type.ADD, 2, 1), op(Type.ADD, 3, 0))));
+        assertTrue(error.getMessage().startsWith("operations[1]"));
+    }
+
+    @Test
+    void statementCountDoesNotGrowWithTheBatch() {
+        assertEquals(statementsFor(2), statementsFor(PRODUCTS));
+    }
+
+    // cart load, one product IN query, then one batched statement per kind of change
+    private long statementsFor(int count) {
+        List<CartOperationDto> operations = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            operations.add(op(Type.ADD, i, 1));
+        }
+        operations.add(op(Type.REMOVE, count - 1, null));
+
+        statistics.clear();
+        cartService.applyOperations(customer.getId(), operations);
+        em.flush();
+        long statements = statistics.getPrepareStatementCount();
+        em.clear();
+        return statements;
+    }
+}
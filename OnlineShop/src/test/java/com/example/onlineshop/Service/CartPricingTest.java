@@ -0,0 +1,95 @@
+package com.example.onlineshop.Service;
+
+import com.example.onlineshop.Entity.*;
+import com.example.onlineshop.dto.CartOperationDto;
+import com.example.onlineshop.dto.CartOperationDto.Type;
+import com.example.onlineshop.dto.CartResponseDto;
+import com.example.onlineshop.dto.ProductRequestDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Line prices and cart totals follow every cart change and every price change.
+ */
+@ServiceSliceTest
+class CartPricingTest {
+
+    @Autowired
+    private ShopFixture fixture;
+    @Autowired
+    private TestEntityManager em;
+    @Autowired
+    private CartService cartService;
+    @Autowired
+    private ProductService productService;
+
+    private Customer buyer;
+    private Customer other;
+    private Product pen;
+    private Product book;
+
+    @BeforeEach
+    void setUp() {
+        buyer = fixture.customer();
+        other = fixture.customer("other");
+        fixture.cart(buyer);
+        fixture.cart(other);
+        pen = fixture.product("Pen", new BigDecimal("2.50"), 100);
+        book = fixture.product("Book", new BigDecimal("10.00"), 100);
+        em.flush();
+        em.clear();
+    }
+
+    private CartResponseDto apply(Customer customer, CartOperationDto... operations) {
+        CartResponseDto cart = cartService.applyOperations(customer.getId(), List.of(operations));
+        em.flush();
+        em.clear();
+        return cart;
+    }
+
+    private static void assertTotals(String subtotal, int quantity, CartResponseDto cart) {
+        assertEquals(0, new BigDecimal(subtotal).compareTo(cart.getSubtotal()), "subtotal " + cart.getSubtotal());
+        assertEquals(quantity, cart.getTotalQuantity());
+    }
+
+    @Test
+    void totalsFollowEachChange() {
+        CartResponseDto cart = apply(buyer,
+                new CartOperationDto(Type.ADD, pen.getId(), 4),
+                new CartOperationDto(Type.ADD, book.getId(), 1));
+        assertTotals("20.00", 5, cart);
+        assertEquals(0, new BigDecimal("10.00").compareTo(cart.getItems().get(0).getLineTotal()));
+
+        assertTotals("15.00", 3, cartService.updateItem(buyer.getId(), pen.getId(), 2));
+        em.flush();
+        em.clear();
+        assertTotals("5.00", 2, cartService.removeItem(buyer.getId(), book.getId()));
+        em.flush();
+        em.clear();
+
+        // the stored totals, not only the returned ones
+        assertTotals("5.00", 2, cartService.getCart(buyer.getId()));
+    }
+
+    @Test
+    void priceChangeRepricesOnlyCartsHoldingTheProduct() {
+        apply(buyer, new CartOperationDto(Type.ADD, pen.getId(), 4), new CartOperationDto(Type.ADD, book.getId(), 1));
+        apply(other, new CartOperationDto(Type.ADD, book.getId(), 2));
+
+        productService.updateProduct(pen.getId(), new ProductRequestDto("Pen", new BigDecimal("3.00"), null, 100, "Misc"));
+        em.flush();
+        em.clear();
+
+        CartResponseDto cart = cartService.getCart(buyer.getId());
+        assertTotals("22.00", 5, cart);
+        assertEquals(0, new BigDecimal("3.00").compareTo(cart.getItems().get(0).getUnitPrice()));
+        assertTotals("20.00", 2, cartService.getCart(other.getId()));
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.onlineshop.Service;
+
+import com.example.onlineshop.Entity.*;
+import com.example.onlineshop.Repository.*;
+import com.example.onlineshop.dto.CartItemRequestDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The add-to-cart upsert is PostgreSQL only (a writable CTE and ON CONFLICT DO
+ * UPDATE), so it runs here against the real database with the Flyway schema.
+ * Concurrent adds of the same product must end up in one line, with the cart
+ * totals counting every add exactly once.
+ */
+@DataJpaTest
+@Testcontainers(disabledWithoutDocker = true)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestPropertySource(properties = {"spring.jpa.show-sql=false", "cart.locks.enabled=false"})
+@Import(ServiceSliceConfiguration.class)
+class CartUpsertPostgresTest {
+
+    private static final int THREADS = 8;
+    private static final int ADDS_PER_THREAD = 25;
+
+    @Container
+    @ServiceConnection
+    static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:17");
+
+    @Autowired
+    private ShopFixture fixture;
+    @Autowired
+    private CartService cartService;
+    @Autowired
+    private CartUpdateRunner cartUpdates;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private CartRepository cartRepository;
+
+    private Long customerId;
+    private Long cheapId;
+    private Long dearId;
+
+    @BeforeEach
+    void setUp() {
+        Customer customer = fixture.customer();
+        fixture.cart(customer);
+        customerId = customer.getId();
+        cheapId = fixture.product("Cheap", new BigDecimal("2.50"), 100).getId();
+        dearId = fixture.product("Dear", new BigDecimal("10.00"), 100).getId();
+    }
+
+    @AfterEach
+    void tearDown() {
+        fixture.deleteAll();
+    }
+
+    @Test
+    void concurrentAddsMergeIntoOneLine() throws Exception {
+        long retriesBefore = cartUpdates.retryCount();
+
+        hammer(cheapId, dearId);
+
+        int perProduct = THREADS * ADDS_PER_THREAD / 2;
+        List<Map<String, Object>> lines = jdbcTemplate.queryForList(
+                "SELECT product_id, quantity FROM cart_items ORDER BY product_id");
+        assertEquals(2, lines.size());
+        assertEquals(perProduct, ((Number) lines.get(0).get("quantity")).intValue());
+        assertEquals(perProduct, ((Number) lines.get(1).get("quantity")).intValue());
+
+        Map<String, Object> cart = jdbcTemplate.queryForMap("SELECT subtotal, total_quantity, version FROM carts");
+        assertEquals(0, new BigDecimal("1250.00").compareTo((BigDecimal) cart.get("subtotal")));
+        assertEquals(THREADS * ADDS_PER_THREAD, ((Number) cart.get("total_quantity")).intValue());
+        assertEquals(THREADS * ADDS_PER_THREAD, ((Number) cart.get("version")).intValue());
+        // the statement waits on the cart row instead of failing the version check
+        assertEquals(retriesBefore, cartUpdates.retryCount());
+    }
+
+    @Test
+    void firstAddCreatesTheCart() {
+        cartRepository.deleteAll();
+
+        cartService.addItem(customerId, request(dearId, 3));
+
+        Map<String, Object> cart = jdbcTemplate.queryForMap("SELECT subtotal, total_quantity FROM carts");
+        assertEquals(0, new BigDecimal("30.00").compareTo((BigDecimal) cart.get("subtotal")));
+        assertEquals(3, ((Number) cart.get("total_quantity")).intValue());
+        assertEquals(3, jdbcTemplate.queryForObject("SELECT quantity FROM cart_items", Integer.class));
+    }
+
+    // half the threads add one product and half the other, all at once
+    private void hammer(Long first, Long second) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                CartItemRequestDto add = request(t % 2 == 0 ? first : second, 1);
+                results.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < ADDS_PER_THREAD; i++) {
+                        cartService.addItem(customerId, add);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> result : results) {
+                result.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static CartItemRequestDto request(Long productId, int quantity) {
+        CartItemRequestDto request = new CartItemRequestDto();
+        request.setProductId(productId);
+        request.setQuantity(quantity);
+        return request;
+    }
+}
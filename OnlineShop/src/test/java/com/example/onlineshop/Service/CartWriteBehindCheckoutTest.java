@@ -0,0 +1,128 @@
+package com.example.onlineshop.Service;
+
+import com.example.onlineshop.Entity.*;
+import com.example.onlineshop.Repository.*;
+import com.example.onlineshop.Util.CartMapper;
+import com.example.onlineshop.Util.OrderMapper;
+import com.example.onlineshop.dto.CartItemRequestDto;
+import com.example.onlineshop.exception.InsufficientStockException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A write-behind checkout takes the ordered lines out of cart_items in the
+ * order's own transaction, so a cart reloaded after a crash that came before
+ * the next flush does not hold what was already bought.
+ */
+@CommittingServiceSliceTest
+class CartWriteBehindCheckoutTest {
+
+    @Autowired
+    private ShopFixture fixture;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private CartUpdateRunner cartUpdates;
+    @Autowired
+    private StockReservations stockReservations;
+    @Autowired
+    private IdempotencyKeys idempotencyKeys;
+    @Autowired
+    private OrderOutbox orderOutbox;
+    @Autowired
+    private CartMapper cartMapper;
+    @Autowired
+    private OrderMapper orderMapper;
+    @Autowired
+    private CartRepository cartRepository;
+    @Autowired
+    private CartItemRepository cartItemRepository;
+    @Autowired
+    private OrderRepository orderRepository;
+    @Autowired
+    private CustomerRepository customerRepository;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private ProductService productService;
+    private CartWriteBehindStore store;
+    private CartService cartService;
+    private Long customerId;
+    private Long cartId;
+    private Long bookId;
+    private Long penId;
+
+    @BeforeEach
+    void setUp() {
+        Customer customer = fixture.customer();
+        customerId = customer.getId();
+        bookId = fixture.product("Book", 100).getId();
+        penId = fixture.product("Pen", 100).getId();
+        cartId = fixture.cart(customer, Map.of(bookId, 2, penId, 1)).getId();
+        store = newStore();
+        cartService = new CartService(cartRepository, cartItemRepository, customerRepository, productRepository,
+                orderRepository, cartMapper, orderMapper, Optional.of(store), cartUpdates, stockReservations,
+                idempotencyKeys, orderOutbox, 200);
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.flushOnShutdown();
+        fixture.deleteAll();
+    }
+
+    @Test
+    void orderedLinesLeaveTheTableWithTheOrder() {
+        // in memory only, the table still holds 2 books
+        cartService.addItem(customerId, request(bookId, 1));
+
+        transactionTemplate.executeWithoutResult(status -> {
+            cartService.checkout(cartId);
+            assertEquals(0, cartItemRows());
+        });
+
+        assertEquals(4, jdbcTemplate.queryForObject("SELECT SUM(quantity) FROM order_items", Integer.class));
+        // a restart before any flush reloads the cart from the table
+        assertTrue(newStore().getCart(customerId).getItems().isEmpty());
+    }
+
+    @Test
+    void failedCheckoutLeavesTheLines() {
+        transactionTemplate.executeWithoutResult(status ->
+                productRepository.findById(penId).orElseThrow().setStockQuantity(0));
+
+        assertThrows(InsufficientStockException.class, () -> cartService.checkout(cartId));
+
+        assertEquals(2, cartItemRows());
+        assertEquals(2, cartService.getCart(customerId).getItems().size());
+        assertEquals(0, orderRepository.count());
+    }
+
+    private CartWriteBehindStore newStore() {
+        return new CartWriteBehindStore(cartRepository, customerRepository, productService, jdbcTemplate,
+                transactionTemplate, fixture.sequenceBlocks(), 500, Duration.ofMinutes(30));
+    }
+
+    private int cartItemRows() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM cart_items WHERE cart_id = ?", Integer.class, cartId);
+    }
+
+    private static CartItemRequestDto request(Long productId, int quantity) {
+        CartItemRequestDto request = new CartItemRequestDto();
+        request.setProductId(productId);
+        request.setQuantity(quantity);
+        return request;
+    }
+}
@@ -0,0 +1,215 @@
+package com.example.onlineshop.Service;
+
+import com.example.onlineshop.Entity.Cart;
+import com.example.onlineshop.Entity.Customer;
+import com.example.onlineshop.Repository.CartRepository;
+import com.example.onlineshop.Repository.CustomerRepository;
+import com.example.onlineshop.Util.SequenceBlocks;
+import com.example.onlineshop.dto.CartItemResponseDto;
+import com.example.onlineshop.dto.CartResponseDto;
+import com.example.onlineshop.dto.ProductResponseDto;
+import com.example.onlineshop.event.ProductChangedEvent;
+import com.example.onlineshop.event.ProductSnapshot;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class CartWriteBehindStoreTest {
+
+    private final CartRepository cartRepository = mock(CartRepository.class);
+    private final ProductService productService = mock(ProductService.class);
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final SequenceBlocks sequenceBlocks = mock(SequenceBlocks.class);
+    private CartWriteBehindStore store;
+
+    @BeforeEach
+    void setUp() {
+        Customer customer = Customer.builder().id(1L).build();
+        Cart cart = Cart.builder().id(10L).customer(customer)
+                .createdAt(LocalDateTime.now()).updatedAt(LocalDateTime.now()).build();
+        when(cartRepository.findWithItemsByCustomerId(1L)).thenReturn(Optional.of(cart));
+        when(cartRepository.findWithItemsById(10L)).thenReturn(Optional.of(cart));
+        when(productService.getProductById(anyLong())).thenAnswer(call -> ProductResponseDto.builder()
+                .id(call.getArgument(0)).name("Product " + call.getArgument(0)).price(BigDecimal.ONE).build());
+        when(sequenceBlocks.next(anyString(), anyInt())).thenAnswer(call -> new long[(int) call.getArgument(1)]);
+
+        store = new CartWriteBehindStore(cartRepository, mock(CustomerRepository.class), productService,
+                jdbcTemplate, new TransactionTemplate(mock(PlatformTransactionManager.class)), sequenceBlocks,
+                500, Duration.ofMinutes(30));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void coalescesManyChangesIntoOneWrite() {
+        for (int i = 0; i < 20; i++) {
+            store.addItem(1L, 5L, 1);
+        }
+        store.addItem(1L, 6L, 2);
+        store.updateItem(1L, 6L, 3);
+        assertEquals(1, store.dirtyCount());
+        verify(cartRepository, times(1)).findWithItemsByCustomerId(1L);
+
+        store.flushDirty();
+
+        assertEquals(0, store.dirtyCount());
+        verify(jdbcTemplate, times(3)).batchUpdate(anyString(), anyCollection(), anyInt(), any());
+        List<CartItemResponseDto> items = store.getCart(1L).getItems();
+        assertEquals(List.of(20, 3), items.stream().map(CartItemResponseDto::getQuantity).toList());
+    }
+
+    @Test
+    void failedWriteKeepsCartsDirty() {
+        store.addItem(1L, 5L, 1);
+        when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any()))
+                .thenThrow(new DataAccessResourceFailureException("down"));
+
+        store.flushDirty();
+        assertEquals(1, store.dirtyCount());
+    }
+
+    @Test
+    void checkoutRemovesOrderedLinesOnlyAfterCommit() {
+        store.addItem(1L, 5L, 2);
+        TransactionSynchronizationManager.initSynchronization();
+
+        Map<Long, Integer> ordered = store.checkout(10L, (customerId, lines) -> lines);
+        assertEquals(Map.of(5L, 2), ordered);
+        // added while the order transaction is still open
+        store.addItem(1L, 5L, 1);
+        assertEquals(3, store.getCart(1L).getItems().get(0).getQuantity());
+
+        TransactionSynchronizationUtils.triggerAfterCommit();
+        assertEquals(1, store.getCart(1L).getItems().get(0).getQuantity());
+    }
+
+    @Test
+    void totalsFollowCartAndPriceChanges() {
+        store.addItem(1L, 5L, 2);
+        store.addItem(1L, 6L, 3);
+        assertEquals(0, BigDecimal.valueOf(5).compareTo(store.getCart(1L).getSubtotal()));
+
+        store.onProductChanged(new ProductChangedEvent(5L,
+                new ProductSnapshot(5L, "Product 5", null, null, BigDecimal.ONE, 1),
+                new ProductSnapshot(5L, "Renamed", null, null, BigDecimal.TEN, 1)));
+        CartResponseDto cart = store.getCart(1L);
+        assertEquals(0, BigDecimal.valueOf(23).compareTo(cart.getSubtotal()));
+        assertEquals("Renamed", cart.getItems().get(0).getProductName());
+
+        store.removeItem(1L, 5L);
+        cart = store.getCart(1L);
+        assertEquals(0, BigDecimal.valueOf(3).compareTo(cart.getSubtotal()));
+        assertEquals(3, cart.getTotalQuantity());
+    }
+
+    @Test
+    void checkoutOfEmptyCartFails() {
+        TransactionSynchronizationManager.initSynchronization();
+        assertThrows(RuntimeException.class, () -> store.checkout(10L, (customerId, lines) -> lines));
+    }
+
+    @Test
+    void concurrentCheckoutPlacesOneOrder() throws Exception {
+        store.addItem(1L, 5L, 2);
+        CountDownLatch placing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger orders = new AtomicInteger();
+
+        CompletableFuture<Map<Long, Integer>> first = CompletableFuture.supplyAsync(() -> {
+            TransactionSynchronizationManager.initSynchronization();
+            try {
+                Map<Long, Integer> ordered = store.checkout(10L, (customerId, lines) -> {
+                    orders.incrementAndGet();
+                    placing.countDown();
+                    // the order's transaction is still open while this waits
+                    await(release);
+                    return lines;
+                });
+                TransactionSynchronizationUtils.triggerAfterCommit();
+                TransactionSynchronizationUtils.invokeAfterCompletion(
+                        TransactionSynchronizationManager.getSynchronizations(), TransactionSynchronization.STATUS_COMMITTED);
+                return ordered;
+            } finally {
+                TransactionSynchronizationManager.clearSynchronization();
+            }
+        });
+        assertTrue(placing.await(5, TimeUnit.SECONDS));
+
+        // neither a second checkout, nor reads, nor flush runs wait for the open order;
+        // a run leaves the cart dirty rather than write the ordered lines back
+        CompletableFuture.runAsync(() -> {
+            TransactionSynchronizationManager.initSynchronization();
+            try {
+                assertThrows(ConcurrencyFailureException.class, () -> store.checkout(10L, (customerId, lines) -> {
+                    orders.incrementAndGet();
+                    return lines;
+                }));
+            } finally {
+                TransactionSynchronizationManager.clearSynchronization();
+            }
+            assertEquals(2, store.getCart(1L).getItems().get(0).getQuantity());
+            store.flushDirty();
+            assertEquals(1, store.dirtyCount());
+        }).get(5, TimeUnit.SECONDS);
+
+        release.countDown();
+        assertEquals(Map.of(5L, 2), first.get(5, TimeUnit.SECONDS));
+        // the runner's retry finds the lines ordered
+        TransactionSynchronizationManager.initSynchronization();
+        assertThrows(RuntimeException.class, () -> store.checkout(10L, (customerId, lines) -> {
+            orders.incrementAndGet();
+            return lines;
+        }));
+        assertEquals(1, orders.get());
+    }
+
+    @Test
+    void rolledBackCheckoutCanBeRepeated() {
+        store.addItem(1L, 5L, 2);
+        TransactionSynchronizationManager.initSynchronization();
+        store.checkout(10L, (customerId, lines) -> lines);
+        TransactionSynchronizationUtils.invokeAfterCompletion(
+                TransactionSynchronizationManager.getSynchronizations(), TransactionSynchronization.STATUS_ROLLED_BACK);
+        TransactionSynchronizationManager.clearSynchronization();
+
+        TransactionSynchronizationManager.initSynchronization();
+        assertEquals(Map.of(5L, 2), store.checkout(10L, (customerId, lines) -> lines));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
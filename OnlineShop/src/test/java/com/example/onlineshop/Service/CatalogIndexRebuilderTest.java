@@ -0,0 +1,57 @@
+package com.example.onlineshop.Service;
+
+import com.example.onlineshop.event.ProductsImportedEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CatalogIndexRebuilderTest {
+
+    private final ProductSearchService searchService = mock(ProductSearchService.class);
+    private final ProductAutocompleteService autocompleteService = mock(ProductAutocompleteService.class);
+    private final ProductFacetService facetService = mock(ProductFacetService.class);
+    private final CatalogIndexRebuilder rebuilder =
+            new CatalogIndexRebuilder(searchService, autocompleteService, facetService);
+
+    @AfterEach
+    void tearDown() {
+        rebuilder.shutdown();
+    }
+
+    @Test
+    void importReturnsBeforeTheRebuildAndLaterImportsShareOne() throws Exception {
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(call -> {
+            running.countDown();
+            assertTrue(release.await(5, TimeUnit.SECONDS));
+            return null;
+        }).doNothing().when(searchService).rebuild();
+
+        rebuilder.onProductsImported(new ProductsImportedEvent(10));
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        // both finish while the first rebuild runs, one more run covers them
+        rebuilder.onProductsImported(new ProductsImportedEvent(5));
+        rebuilder.onProductsImported(new ProductsImportedEvent(5));
+        release.countDown();
+
+        verify(facetService, timeout(5_000).times(2)).reconcile();
+        verify(searchService, times(2)).rebuild();
+        verify(autocompleteService, times(2)).rebuildFromDatabase();
+    }
+
+    @Test
+    void failedViewDoesNotStopTheOthers() {
+        doThrow(new IllegalStateException("down")).when(searchService).rebuild();
+
+        rebuilder.onProductsImported(new ProductsImportedEvent(1));
+
+        verify(facetService, timeout(5_000)).reconcile();
+        verify(autocompleteService).rebuildFromDatabase();
+    }
+}
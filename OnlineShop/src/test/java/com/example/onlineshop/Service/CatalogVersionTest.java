@@ -0,0 +1,31 @@
+package com.example.onlineshop.Service;
+
+import com.example.onlineshop.event.ProductChangedEvent;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CatalogVersionTest {
+
+    @Test
+    void everyWriteMovesTagAndLastModifiedForward() {
+        CatalogVersion version = new CatalogVersion();
+        String tag = version.etag();
+        long modified = version.lastModified();
+
+        version.onProductChanged(new ProductChangedEvent(1L, null, null));
+        assertNotEquals(tag, version.etag());
+        assertTrue(version.lastModified() >= modified + 1000);
+
+        String afterWrite = version.etag();
+        version.onProductsImported();
+        assertNotEquals(afterWrite, version.etag());
+    }
+
+    @Test
+    void tagIsStableWithoutWrites() {
+        CatalogVersion version = new CatalogVersion();
+        assertEquals(version.etag(), version.etag());
+        assertTrue(version.etag().startsWith("\"") && version.etag().endsWith("\""));
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.onlineshop.Service;
+
+import com.example.onlineshop.Entity.*;
+import com.example.onlineshop.Repository.CartRepository;
+import com.example.onlineshop.dto.OrderItemRequestDto;
+import com.example.onlineshop.dto.OrderRequestDto;
+import com.example.onlineshop.dto.OrderResponseDto;
+import com.example.onlineshop.exception.ProductNotFoundException;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Counts the JDBC statements checkout and order creation prepare. With pooled
+ * sequence ids and insert batching the count must not grow with the number of
+ * order lines: the order_items ids for every line come from one query.
+ */
+@ServiceSliceTest
+class CheckoutStatementCountTest {
+
+    @Autowired
+    private ShopFixture fixture;
+    @Autowired
+    private TestEntityManager em;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private CartService cartService;
+    @Autowired
+    private OrderService orderService;
+    @Autowired
+    private CartRepository cartRepository;
+
+    private Statistics statistics;
+    private Customer customer;
+    private final List<Product> products = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        customer = fixture.customer();
+        for (int i = 0; i < 1000; i++) {
+            products.add(fixture.product("Product " + i, BigDecimal.valueOf(10 + i % 90), 10_000));
+        }
+        em.flush();
+    }
+
+    private long checkoutStatements(int lines) {
+        Cart cart = Cart.builder()
+                .customer(customer)
+                .createdAt(LocalDateTime.now())
+                .updatedAt(LocalDateTime.now())
+                .build();
+        for (int i = 0; i < lines; i++) {
+            cart.getItems().put(products.get(i).getId(), CartItem.builder().cart(cart).product(products.get(i)).quantity(1).build());
+        }
+        Long cartId = em.persistAndFlush(cart).getId();
+        em.clear();
+
+        statistics.clear();
+        cartService.checkout(cartId);
+        em.flush();
+        long statements = statistics.getPrepareStatementCount();
+
+        em.clear();
+        cartRepository.deleteById(cartId);
+        em.flush();
+        return statements;
+    }
+
+    private long createOrderStatements(int lines) {
+        OrderRequestDto request = new OrderRequestDto();
+        request.setCustomerId(customer.getId());
+        List<OrderItemRequestDto> items = new ArrayList<>();
+        for (int i = 0; i < lines; i++) {
+            OrderItemRequestDto item = new OrderItemRequestDto();
+            item.setProductId(products.get(i).getId());
+            item.setQuantity(2);
+            items.add(item);
+        }
+        request.setItems(items);
+        em.clear();
+
+        statistics.clear();
+        orderService.createOrder(request);
+        em.flush();
+        return statistics.getPrepareStatementCount();
+    }
+
+    @Test
+    void checkoutCostDoesNotGrowWithLines() {
+        // the first run also fetches the id blocks
+        checkoutStatements(1);
+        long single = checkoutStatements(1);
+        long twenty = checkoutStatements(20);
+        assertEquals(single, twenty);
+    }
+
+    @Test
+    void repeatedLinesAreMerged() {
+        OrderRequestDto request = new OrderRequestDto();
+        request.setCustomerId(customer.getId());
+        List<OrderItemRequestDto> items = new ArrayList<>();
+        for (int quantity : new int[]{1, 2, 3}) {
+            OrderItemRequestDto item = new OrderItemRequestDto();
+            item.setProductId(products.get(0).getId());
+            item.setQuantity(quantity);
+            items.add(item);
+        }
+        request.setItems(items);
+
+        OrderResponseDto order = orderService.createOrder(request);
+
+        assertEquals(1, order.getItems().size());
+        assertEquals(6, order.getItems().get(0).getQuantity());
+        assertEquals(0, products.get(0).getPrice().multiply(BigDecimal.valueOf(6)).compareTo(order.getTotalAmount()));
+    }
+
+    @Test
+    void unknownProductsAreReportedTogether() {
+        OrderRequestDto request = new OrderRequestDto();
+        request.setCustomerId(customer.getId());
+        List<OrderItemRequestDto> items = new ArrayList<>();
+        for (long productId : new long[]{products.get(0).getId(), -1, -2}) {
+            OrderItemRequestDto item = new OrderItemRequestDto();
+            item.setProductId(productId);
+            item.setQuantity(1);
+            items.add(item);
+        }
+        request.setItems(items);
+
+        ProductNotFoundException e = assertThrows(ProductNotFoundException.class, () -> orderService.createOrder(request));
+        assertEquals("Product not found: [-1, -2]", e.getMessage());
+    }
+
+    @Test
+    void createOrderCostDoesNotGrowWithLines() {
+        createOrderStatements(1);
+        long single = createOrderStatements(1);
+        for (int lines : new int[]{1, 10, 100, 1000}) {
+            long statements = createOrderStatements(lines);
+            // at most one more query, when the ids left over from the last order run out
+            assertTrue(statements - single <= 1,
+                    lines + " lines took " + statements + " statements, 1 line took " + single);
+        }
+    }
+}
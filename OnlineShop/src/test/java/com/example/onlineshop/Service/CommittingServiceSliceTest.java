@@ -0,0 +1,21 @@
+package com.example.onlineshop.Service;
+
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * A ServiceSliceTest without the surrounding test transaction, so every
+ * service call commits on its own and other threads see it. Such tests clear
+ * the tables with ShopFixture.deleteAll() after each test.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@ServiceSliceTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public @interface CommittingServiceSliceTest {
+}
@@ -0,0 +1,120 @@
+package com.example.onlineshop.Service;
+
+import com.example.onlineshop.Entity.*;
+import com.example.onlineshop.dto.CartResponseDto;
+import com.example.onlineshop.dto.OrderPageResponseDto;
+import com.example.onlineshop.dto.OrderResponseDto;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Exact SQL statement counts for the read paths behind the cart view, the
+ * order detail view and the order history view. Each must be a fixed number
+ * of queries however many lines and orders there are.
+ */
+@ServiceSliceTest
+@Import(OrderHistoryService.class)
+class FetchPlanStatementCountTest {
+
+    private static final int ORDERS = 3;
+    private static final int LINES = 5;
+
+    @Autowired
+    private ShopFixture fixture;
+    @Autowired
+    private TestEntityManager em;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private CartService cartService;
+    @Autowired
+    private OrderService orderService;
+    @Autowired
+    private OrderHistoryService orderHistoryService;
+
+    private Statistics statistics;
+    private Customer customer;
+    private final List<Order> orders = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        customer = fixture.customer();
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < LINES; i++) {
+            products.add(fixture.product("Product " + i, BigDecimal.valueOf(10 + i), 100));
+        }
+
+        Cart cart = Cart.builder()
+                .customer(customer)
+                .createdAt(LocalDateTime.now())
+                .updatedAt(LocalDateTime.now())
+                .build();
+        products.forEach(product ->
+                cart.getItems().put(product.getId(), CartItem.builder().cart(cart).product(product).quantity(1).build()));
+        em.persist(cart);
+
+        for (int o = 0; o < ORDERS; o++) {
+            Order order = Order.builder()
+                    .customer(customer)
+                    .status(OrderStatus.PENDING)
+                    .totalAmount(BigDecimal.TEN)
+                    .createdAt(LocalDateTime.now())
+                    .build();
+            products.forEach(product -> order.getItems().add(OrderItem.builder()
+                    .order(order)
+                    .product(product)
+                    .quantity(1)
+                    .priceAtPurchase(product.getPrice())
+                    .build()));
+            orders.add(em.persist(order));
+        }
+        em.flush();
+        em.clear();
+    }
+
+    private <T> T countingStatements(long expected, Supplier<T> call) {
+        statistics.clear();
+        T result = call.get();
+        assertEquals(expected, statistics.getPrepareStatementCount());
+        return result;
+    }
+
+    @Test
+    void cartViewIsOneQuery() {
+        CartResponseDto cart = countingStatements(1, () -> cartService.getCart(customer.getId()));
+        assertEquals(LINES, cart.getItems().size());
+        assertNotNull(cart.getItems().get(0).getProductName());
+    }
+
+    @Test
+    void orderDetailIsOneQuery() {
+        OrderResponseDto order = countingStatements(1, () -> orderService.getOrderById(orders.get(0).getId()));
+        assertEquals(LINES, order.getItems().size());
+        assertEquals(customer.getId(), order.getCustomerId());
+    }
+
+    @Test
+    void orderHistoryPageIsTwoQueriesWithoutEntities() {
+        OrderPageResponseDto history = countingStatements(2, () -> orderHistoryService.getOrderPage(customer.getId(), null, null));
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals(ORDERS, history.getItems().size());
+        history.getItems().forEach(order -> assertEquals(LINES, order.getItems().size()));
+        assertNotNull(history.getItems().get(0).getItems().get(0).getProductName());
+    }
+}
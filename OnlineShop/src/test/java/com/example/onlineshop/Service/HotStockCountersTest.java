@@ -0,0 +1,197 @@
+package com.example.onlineshop.Service;
+
+import com.example.onlineshop.Entity.*;
+import com.example.onlineshop.Repository.*;
+import com.example.onlineshop.Util.OrderMapper;
+import com.example.onlineshop.dto.OrderItemRequestDto;
+import com.example.onlineshop.dto.OrderRequestDto;
+import com.example.onlineshop.exception.InsufficientStockException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Flash sale counters: never oversell under contention, give back rolled back
+ * units, reconcile into the product's stock and recover after a crash.
+ */
+@CommittingServiceSliceTest
+class HotStockCountersTest {
+
+    private static final int STOCK = 50;
+    private static final int ALLOTMENT = 20;
+    private static final int THREADS = 8;
+    private static final int ORDERS_PER_THREAD = 10;
+
+    @Autowired
+    private ShopFixture fixture;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private OrderRepository orderRepository;
+    @Autowired
+    private CustomerRepository customerRepository;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private OrderMapper orderMapper;
+    @Autowired
+    private IdempotencyKeys idempotencyKeys;
+    @Autowired
+    private OrderOutbox orderOutbox;
+
+    private Long customerId;
+    private Long hotId;
+    private Long coldId;
+    private HotStockCounters counters;
+    private OrderService orderService;
+
+    @BeforeEach
+    void setUp() {
+        customerId = fixture.customer().getId();
+        hotId = fixture.product("Hot", STOCK).getId();
+        coldId = fixture.product("Cold", 1).getId();
+        start();
+    }
+
+    // a fresh application instance over the same database
+    private void start() {
+        counters = new HotStockCounters(jdbcTemplate, transactionManager, Set.of(hotId),
+                4, ALLOTMENT, Duration.ofMinutes(1));
+        counters.recover();
+        StockReservations reservations = new StockReservations(jdbcTemplate, Optional.of(counters));
+        orderService = new OrderService(orderRepository, customerRepository, productRepository, orderMapper,
+                reservations, idempotencyKeys, transactionTemplate, orderOutbox);
+    }
+
+    @AfterEach
+    void tearDown() {
+        fixture.deleteAll();
+    }
+
+    @Test
+    void hotProductNeverOversells() throws Exception {
+        AtomicInteger sold = new AtomicInteger();
+        AtomicInteger refused = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < ORDERS_PER_THREAD; i++) {
+                        try {
+                            place(hotId);
+                            sold.incrementAndGet();
+                        } catch (InsufficientStockException e) {
+                            refused.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> result : results) {
+                result.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        int attempts = THREADS * ORDERS_PER_THREAD;
+        assertEquals(STOCK, sold.get());
+        assertEquals(attempts - STOCK, refused.get());
+        // the catalog catches up on reconciliation
+        assertEquals(STOCK, stockOf(hotId));
+        counters.reconcile();
+        assertEquals(0, stockOf(hotId));
+        assertEquals(0, allotted());
+    }
+
+    @Test
+    void shortLineGivesTheHotUnitsBack() {
+        place(coldId);
+
+        InsufficientStockException error = assertThrows(InsufficientStockException.class, () -> place(hotId, coldId));
+
+        assertEquals(List.of(coldId), error.getProductIds());
+        assertEquals(ALLOTMENT, counters.available(hotId));
+        counters.reconcile();
+        assertEquals(STOCK, stockOf(hotId));
+    }
+
+    @Test
+    void crashRecoveryTakesTheSalesOffOnce() {
+        for (int i = 0; i < 5; i++) {
+            place(hotId);
+        }
+        // no reconciliation and no release: the counters are simply lost
+        start();
+
+        assertEquals(STOCK - 5, stockOf(hotId));
+        assertEquals(0, allotted());
+        for (int i = 5; i < STOCK; i++) {
+            place(hotId);
+        }
+        assertThrows(InsufficientStockException.class, () -> place(hotId));
+    }
+
+    @Test
+    void cleanShutdownLeavesNothingToRecover() {
+        for (int i = 0; i < 5; i++) {
+            place(hotId);
+        }
+        counters.release();
+        assertEquals(STOCK - 5, stockOf(hotId));
+        assertEquals(0, allotted());
+
+        // the five orders are inside the recovery window, they must not count again
+        start();
+        assertEquals(STOCK - 5, stockOf(hotId));
+    }
+
+    private void place(Long... productIds) {
+        OrderRequestDto request = new OrderRequestDto();
+        request.setCustomerId(customerId);
+        List<OrderItemRequestDto> items = new ArrayList<>();
+        for (Long productId : productIds) {
+            OrderItemRequestDto item = new OrderItemRequestDto();
+            item.setProductId(productId);
+            item.setQuantity(1);
+            items.add(item);
+        }
+        request.setItems(items);
+        transactionTemplate.executeWithoutResult(status -> orderService.createOrder(request));
+    }
+
+    private int stockOf(Long productId) {
+        return productRepository.findById(productId).orElseThrow().getStockQuantity();
+    }
+
+    private int allotted() {
+        return jdbcTemplate.queryForObject("SELECT allotted FROM hot_stock_allotments WHERE product_id = ?",
+                Integer.class, hotId);
+    }
+}
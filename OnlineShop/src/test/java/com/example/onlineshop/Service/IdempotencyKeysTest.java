@@ -0,0 +1,256 @@
+package com.example.onlineshop.Service;
+
+import com.example.onlineshop.Entity.*;
+import com.example.onlineshop.Repository.*;
+import com.example.onlineshop.Util.CartMapper;
+import com.example.onlineshop.Util.OrderMapper;
+import com.example.onlineshop.dto.OrderItemRequestDto;
+import com.example.onlineshop.dto.OrderRequestDto;
+import com.example.onlineshop.dto.OrderResponseDto;
+import com.example.onlineshop.exception.InsufficientStockException;
+import com.example.onlineshop.exception.InvalidRequestException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A request repeated with the same Idempotency-Key, one after the other or
+ * at the same time, places a single order and gets that order back.
+ */
+@CommittingServiceSliceTest
+@TestPropertySource(properties = "idempotency.purge.batch-size=2")
+class IdempotencyKeysTest {
+
+    private static final int THREADS = 8;
+
+    @Autowired
+    private ShopFixture fixture;
+    @Autowired
+    private CartService cartService;
+    @Autowired
+    private OrderService orderService;
+    @Autowired
+    private IdempotencyKeys idempotencyKeys;
+    @Autowired
+    private StockReservations stockReservations;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private OrderMapper orderMapper;
+    @Autowired
+    private OrderOutbox orderOutbox;
+    @Autowired
+    private CartMapper cartMapper;
+    @Autowired
+    private CartRepository cartRepository;
+    @Autowired
+    private CartItemRepository cartItemRepository;
+    @Autowired
+    private OrderRepository orderRepository;
+    @Autowired
+    private CustomerRepository customerRepository;
+    @Autowired
+    private ProductRepository productRepository;
+
+    private Long customerId;
+    private Long cartId;
+    private Long productId;
+    // unique per test, the bean's in-memory responses outlive the table cleanup
+    private String key;
+
+    @BeforeEach
+    void setUp() {
+        Customer customer = fixture.customer();
+        customerId = customer.getId();
+        productId = fixture.product("Product", 100).getId();
+        cartId = fixture.cart(customer, Map.of(productId, 2)).getId();
+        key = "key-" + productId;
+    }
+
+    @AfterEach
+    void tearDown() {
+        fixture.deleteAll();
+    }
+
+    @Test
+    void repeatedOrderReturnsTheFirstOne() {
+        long replaysBefore = idempotencyKeys.replayCount();
+
+        OrderResponseDto first = orderService.createOrder(order(3), key);
+        OrderResponseDto again = orderService.createOrder(order(3), key);
+
+        assertEquals(first.getId(), again.getId());
+        assertEquals(first.getItems().size(), again.getItems().size());
+        assertEquals(1, orderRepository.count());
+        assertEquals(97, stockOf(productId));
+        assertEquals(1, idempotencyKeys.replayCount() - replaysBefore);
+    }
+
+    @Test
+    void anotherInstanceReplaysFromTheTable() {
+        OrderResponseDto first = orderService.createOrder(order(3), key);
+
+        // nothing in its memory, the stored response comes from idempotency_keys
+        IdempotencyKeys fresh = new IdempotencyKeys(jdbcTemplate, transactionTemplate, objectMapper,
+                Duration.ofDays(1), 100, 100);
+        OrderService other = new OrderService(orderRepository, customerRepository, productRepository, orderMapper,
+                stockReservations, fresh, transactionTemplate, orderOutbox);
+        OrderResponseDto again = other.createOrder(order(3), key);
+
+        assertEquals(first.getId(), again.getId());
+        assertEquals(0, first.getTotalAmount().compareTo(again.getTotalAmount()));
+        assertEquals(1, orderRepository.count());
+    }
+
+    @Test
+    void checkoutOnAnotherInstanceReplaysAfterAConflict() throws Exception {
+        IdempotencyKeys fresh = new IdempotencyKeys(jdbcTemplate, transactionTemplate, objectMapper,
+                Duration.ofDays(1), 100, 100);
+        CartService other = new CartService(cartRepository, cartItemRepository, customerRepository,
+                productRepository, orderRepository, cartMapper, orderMapper, Optional.empty(),
+                new CartUpdateRunner(transactionTemplate, 5, false, 1), stockReservations, fresh, orderOutbox, 200);
+        CountDownLatch holding = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        CompletableFuture<OrderResponseDto> first = CompletableFuture.supplyAsync(() ->
+                transactionTemplate.execute(status -> {
+                    OrderResponseDto order = cartService.checkout(cartId, key);
+                    holding.countDown();
+                    await(commit);
+                    return order;
+                }));
+        assertTrue(holding.await(10, TimeUnit.SECONDS));
+
+        // the repeat finds no stored key yet and waits on the cart row the first checkout holds
+        AtomicReference<Thread> repeating = new AtomicReference<>();
+        CompletableFuture<OrderResponseDto> again = CompletableFuture.supplyAsync(() -> {
+            repeating.set(Thread.currentThread());
+            return other.checkout(cartId, key);
+        });
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (repeating.get() == null || repeating.get().getState() != Thread.State.TIMED_WAITING) {
+            assertTrue(System.currentTimeMillis() < deadline, "repeat never blocked on the cart");
+            Thread.sleep(5);
+        }
+        commit.countDown();
+
+        assertEquals(first.get(10, TimeUnit.SECONDS).getId(), again.get(10, TimeUnit.SECONDS).getId());
+        assertEquals(1, fresh.replayCount());
+        assertEquals(1, orderRepository.count());
+        assertEquals(98, stockOf(productId));
+    }
+
+    @Test
+    void concurrentCheckoutsPlaceOneOrder() throws Exception {
+        long sharedBefore = idempotencyKeys.replayCount() + idempotencyKeys.coalescedCount();
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        Set<Long> orderIds;
+        try {
+            List<Future<Long>> results = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return cartService.checkout(cartId, key).getId();
+                }));
+            }
+            start.countDown();
+            List<Long> ids = new ArrayList<>();
+            for (Future<Long> result : results) {
+                ids.add(result.get(60, TimeUnit.SECONDS));
+            }
+            orderIds = ids.stream().collect(Collectors.toSet());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(1, orderIds.size());
+        assertEquals(1, orderRepository.count());
+        assertEquals(98, stockOf(productId));
+        assertEquals(THREADS - 1, idempotencyKeys.replayCount() + idempotencyKeys.coalescedCount() - sharedBefore);
+    }
+
+    @Test
+    void keyReusedForAnotherRequestIsRefused() {
+        orderService.createOrder(order(3), key);
+
+        assertThrows(InvalidRequestException.class, () -> orderService.createOrder(order(4), key));
+        assertEquals(1, orderRepository.count());
+    }
+
+    @Test
+    void failedRequestCanBeRetriedWithTheSameKey() {
+        assertThrows(InsufficientStockException.class, () -> orderService.createOrder(order(101), key));
+        transactionTemplate.executeWithoutResult(status -> productRepository.findById(productId).orElseThrow().setStockQuantity(200));
+
+        OrderResponseDto order = orderService.createOrder(order(101), key);
+
+        assertNotNull(order.getId());
+        assertEquals(99, stockOf(productId));
+    }
+
+    @Test
+    void purgeRemovesExpiredKeysInBatches() {
+        orderService.createOrder(order(1), key);
+        Timestamp past = Timestamp.valueOf(LocalDateTime.now().minusDays(2));
+        for (int i = 0; i < 5; i++) {
+            jdbcTemplate.update("INSERT INTO idempotency_keys (scope, idem_key, fingerprint, response, created_at, expires_at) "
+                    + "VALUES ('orders', ?, 'x', '{}', ?, ?)", "old-" + i, past, past);
+        }
+        long purgedBefore = idempotencyKeys.purgedCount();
+
+        idempotencyKeys.purge();
+
+        assertEquals(5, idempotencyKeys.purgedCount() - purgedBefore);
+        assertEquals(List.of(key), jdbcTemplate.queryForList("SELECT idem_key FROM idempotency_keys", String.class));
+    }
+
+    private OrderRequestDto order(int quantity) {
+        OrderItemRequestDto item = new OrderItemRequestDto();
+        item.setProductId(productId);
+        item.setQuantity(quantity);
+        OrderRequestDto request = new OrderRequestDto();
+        request.setCustomerId(customerId);
+        request.setItems(List.of(item));
+        return request;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private int stockOf(Long id) {
+        return productRepository.findById(id).orElseThrow().getStockQuantity();
+    }
+}
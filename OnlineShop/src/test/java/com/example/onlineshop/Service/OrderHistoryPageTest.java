@@ -0,0 +1,118 @@
+package com.example.onlineshop.Service;
+
+import com.example.onlineshop.Entity.*;
+import com.example.onlineshop.dto.OrderPageResponseDto;
+import com.example.onlineshop.dto.OrderResponseDto;
+import com.example.onlineshop.exception.InvalidRequestException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Walks a customer's order history page by page: every order comes back once,
+ * newest first, also when several orders share a created_at.
+ */
+@ServiceSliceTest
+@Import(OrderHistoryService.class)
+class OrderHistoryPageTest {
+
+    private static final int ORDERS = 25;
+
+    @Autowired
+    private ShopFixture fixture;
+    @Autowired
+    private TestEntityManager em;
+    @Autowired
+    private OrderHistoryService orderHistoryService;
+
+    private Customer customer;
+    private final List<Order> orders = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        customer = fixture.customer();
+        Customer other = fixture.customer("other");
+        Product product = fixture.product("Product", 100);
+
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 12, 0);
+        for (int i = 0; i < ORDERS; i++) {
+            // three orders per timestamp, so page boundaries fall inside ties
+            orders.add(persistOrder(customer, product, start.plusMinutes(i / 3), i + 1));
+        }
+        persistOrder(other, product, start, 1);
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    void pagesWalkTheHistoryNewestFirst() {
+        List<Long> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            OrderPageResponseDto page = orderHistoryService.getOrderPage(customer.getId(), cursor, 10);
+            page.getItems().forEach(order -> {
+                assertEquals(customer.getId(), order.getCustomerId());
+                assertEquals(1, order.getItems().size());
+                seen.add(order.getId());
+            });
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        List<Long> expected = orders.stream()
+                .sorted(Comparator.comparing(Order::getCreatedAt).thenComparing(Order::getId).reversed())
+                .map(Order::getId)
+                .toList();
+        assertEquals(expected, seen);
+        assertEquals(3, pages);
+    }
+
+    @Test
+    void linesBelongToTheirOrder() {
+        OrderResponseDto newest = orderHistoryService.getOrderPage(customer.getId(), null, 1).getItems().get(0);
+
+        assertEquals(orders.get(ORDERS - 1).getId(), newest.getId());
+        assertEquals(ORDERS, newest.getItems().get(0).getQuantity());
+    }
+
+    @Test
+    void exactlyFullLastPageHasNoCursor() {
+        OrderPageResponseDto page = orderHistoryService.getOrderPage(customer.getId(), null, ORDERS);
+
+        assertEquals(ORDERS, page.getItems().size());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void rejectsGarbageCursor() {
+        assertThrows(InvalidRequestException.class,
+                () -> orderHistoryService.getOrderPage(customer.getId(), "not-a-cursor", 10));
+    }
+
+    private Order persistOrder(Customer owner, Product product, LocalDateTime createdAt, int quantity) {
+        Order order = Order.builder()
+                .customer(owner)
+                .status(OrderStatus.PENDING)
+                .totalAmount(product.getPrice().multiply(BigDecimal.valueOf(quantity)))
+                .createdAt(createdAt)
+                .build();
+        order.getItems().add(OrderItem.builder()
+                .order(order)
+                .product(product)
+                .quantity(quantity)
+                .priceAtPurchase(product.getPrice())
+                .build());
+        return em.persist(order);
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.onlineshop.Service;
+
+import com.example.onlineshop.Entity.*;
+import com.example.onlineshop.Repository.*;
+import com.example.onlineshop.dto.OrderItemRequestDto;
+import com.example.onlineshop.dto.OrderRequestDto;
+import com.example.onlineshop.exception.OrderBacklogException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Placed orders leave an outbox row that the dispatcher drains on its worker
+ * pool, retrying failed events, and a full backlog turns new orders away.
+ */
+@CommittingServiceSliceTest
+@TestPropertySource(properties = {"order.outbox.retry-delay=PT0S", "order.outbox.max-backlog=5",
+        "order.outbox.batch-size=4", "order.outbox.workers=2", "order.outbox.queue-capacity=2"})
+@Import({OrderOutboxDispatcher.class, OrderConfirmationNotifier.class, OrderOutboxDispatcherTest.FlakyHandler.class})
+class OrderOutboxDispatcherTest {
+
+    @Autowired
+    private ShopFixture fixture;
+    @Autowired
+    private OrderService orderService;
+    @Autowired
+    private OrderOutboxDispatcher dispatcher;
+    @Autowired
+    private OrderConfirmationNotifier notifier;
+    @Autowired
+    private FlakyHandler flaky;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private OrderRepository orderRepository;
+
+    private Long customerId;
+    private Long productId;
+
+    @BeforeEach
+    void setUp() {
+        customerId = fixture.customer().getId();
+        productId = fixture.product("Product", 1_000).getId();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        drain();
+        flaky.calls.clear();
+        fixture.deleteAll();
+    }
+
+    @Test
+    void drainsEveryPlacedOrderOnce() throws Exception {
+        long processedBefore = dispatcher.processedCount();
+        long sentBefore = notifier.sentCount();
+        List<Long> orderIds = place(10);
+        assertEquals(10, outboxSize());
+
+        drain();
+
+        assertEquals(10, dispatcher.processedCount() - processedBefore);
+        assertEquals(10, notifier.sentCount() - sentBefore);
+        for (Long orderId : orderIds) {
+            assertNotNull(orderRepository.findById(orderId).orElseThrow().getConfirmationSentAt());
+        }
+        // a redelivery finds the order confirmed already
+        notifier.onOrderPlaced(orderIds.get(0));
+        assertEquals(10, notifier.sentCount() - sentBefore);
+    }
+
+    @Test
+    void failedEventIsRetried() throws Exception {
+        long failuresBefore = dispatcher.failureCount();
+        List<Long> orderIds = place(3);
+        Long failing = orderIds.get(1);
+        flaky.failOnce.add(failing);
+
+        drain();
+
+        assertEquals(1, dispatcher.failureCount() - failuresBefore);
+        assertEquals(2, flaky.calls.get(failing));
+        assertEquals(1, flaky.calls.get(orderIds.get(0)));
+        assertNotNull(orderRepository.findById(failing).orElseThrow().getConfirmationSentAt());
+    }
+
+    @Test
+    void statusChangeKeepsTheConfirmationStamp() throws Exception {
+        Long orderId = place(1).get(0);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            // loaded before the confirmation lands, saved after it
+            Order order = orderRepository.findById(orderId).orElseThrow();
+            notifier.onOrderPlaced(orderId);
+            order.setStatus(OrderStatus.SHIPPED);
+        });
+
+        Order order = orderRepository.findById(orderId).orElseThrow();
+        assertEquals(OrderStatus.SHIPPED, order.getStatus());
+        assertNotNull(order.getConfirmationSentAt());
+    }
+
+    @Test
+    void fullBacklogTurnsNewOrdersAway() throws Exception {
+        place(5);
+        dispatcher.refreshBacklog();
+
+        assertThrows(OrderBacklogException.class, () -> place(1));
+
+        drain();
+        assertEquals(1, place(1).size());
+    }
+
+    private List<Long> place(int count) {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            OrderItemRequestDto item = new OrderItemRequestDto();
+            item.setProductId(productId);
+            item.setQuantity(1);
+            OrderRequestDto request = new OrderRequestDto();
+            request.setCustomerId(customerId);
+            request.setItems(List.of(item));
+            ids.add(orderService.createOrder(request).getId());
+        }
+        return ids;
+    }
+
+    // polls like the scheduler would until the outbox is empty and the workers are done
+    private void drain() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (true) {
+            dispatcher.poll();
+            while (!dispatcher.isIdle()) {
+                Thread.sleep(10);
+            }
+            if (outboxSize() == 0) {
+                dispatcher.refreshBacklog();
+                return;
+            }
+            assertTrue(System.currentTimeMillis() < deadline, "outbox not drained");
+            Thread.sleep(10);
+        }
+    }
+
+    private int outboxSize() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM order_outbox", Integer.class);
+    }
+
+    static class FlakyHandler implements OrderPlacedHandler {
+
+        final Set<Long> failOnce = ConcurrentHashMap.newKeySet();
+        final Map<Long, Integer> calls = new ConcurrentHashMap<>();
+
+        @Override
+        public void onOrderPlaced(Long orderId) {
+            calls.merge(orderId, 1, Integer::sum);
+            if (failOnce.remove(orderId)) {
+                throw new IllegalStateException("Handler failed for order " + orderId);
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.onlineshop.Service;
+
+import com.example.onlineshop.Entity.Product;
+import com.example.onlineshop.Util.ProductMapper;
+import com.example.onlineshop.dto.ProductBatchResponseDto;
+import com.example.onlineshop.dto.ProductResponseDto;
+import com.example.onlineshop.exception.InvalidRequestException;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = "product.batch.max-size=5")
+@ActiveProfiles("jpa-test")
+@Import({ProductService.class, ProductCache.class, ProductMapper.class})
+class ProductBatchLookupTest {
+
+    @Autowired
+    private TestEntityManager em;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private ProductService productService;
+
+    private Long persist(String name) {
+        return em.persist(Product.builder()
+                .name(name)
+                .price(BigDecimal.ONE)
+                .stockQuantity(1)
+                .category("Misc")
+                .build()).getId();
+    }
+
+    @Test
+    void resolvesInRequestOrderWithOneQueryAndReportsMissingIds() {
+        Long a = persist("A");
+        Long b = persist("B");
+        Long c = persist("C");
+        em.flush();
+        em.clear();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        statistics.clear();
+        ProductBatchResponseDto first = productService.getProductsByIds(List.of(c, -1L, a, c, b));
+        assertEquals(List.of(c, a, b), first.getItems().stream().map(ProductResponseDto::getId).toList());
+        assertEquals(List.of(-1L), first.getMissing());
+        assertEquals(1, statistics.getPrepareStatementCount());
+
+        em.clear();
+        statistics.clear();
+        ProductBatchResponseDto second = productService.getProductsByIds(List.of(b, a));
+        assertEquals(List.of(b, a), second.getItems().stream().map(ProductResponseDto::getId).toList());
+        assertEquals(0, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void rejectsBatchesOverTheCap() {
+        List<Long> ids = LongStream.rangeClosed(1, 6).boxed().toList();
+        assertThrows(InvalidRequestException.class, () -> productService.getProductsByIds(ids));
+        // duplicates do not count against the cap
+        assertDoesNotThrow(() -> productService.getProductsByIds(Collections.nCopies(50, 1L)));
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.onlineshop.Service;
+
+import com.example.onlineshop.dto.ProductResponseDto;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductCacheTest {
+
+    private static ProductResponseDto product(long id) {
+        return new ProductResponseDto(id, "Product " + id, BigDecimal.TEN, "Books", null, null);
+    }
+
+    @Test
+    void staleLoadIsDroppedAfterInvalidation() {
+        ProductCache cache = new ProductCache(10, Duration.ofMinutes(1));
+
+        long stamp = cache.stamp();
+        // a write commits while the loader is still reading the old row
+        cache.invalidate(1L);
+        cache.putIfCurrent(1L, product(1), stamp);
+
+        assertNull(cache.get(1L));
+        assertEquals(1, cache.missCount());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedWhenFull() {
+        ProductCache cache = new ProductCache(2, Duration.ofMinutes(1));
+        cache.putIfCurrent(1L, product(1), cache.stamp());
+        cache.putIfCurrent(2L, product(2), cache.stamp());
+        cache.get(1L);
+        cache.putIfCurrent(3L, product(3), cache.stamp());
+
+        assertNotNull(cache.get(1L));
+        assertNull(cache.get(2L));
+        assertEquals(1, cache.evictionCount());
+        assertEquals(2, cache.hitCount());
+    }
+
+    @Test
+    void expiresEntriesAfterTtl() throws InterruptedException {
+        ProductCache cache = new ProductCache(10, Duration.ofMillis(1));
+        cache.putIfCurrent(1L, product(1), cache.stamp());
+        Thread.sleep(5);
+
+        assertNull(cache.get(1L));
+        assertEquals(1, cache.evictionCount());
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.onlineshop.Service;
+
+import com.example.onlineshop.Entity.Product;
+import com.example.onlineshop.Util.ProductCursor;
+import com.example.onlineshop.Util.ProductCursor.ProductSort;
+import com.example.onlineshop.Util.ProductMapper;
+import com.example.onlineshop.dto.ProductPageResponseDto;
+import com.example.onlineshop.dto.ProductResponseDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Walks the catalog by category pages with uncategorized products among
+ * them: every product comes back once, and the pages resume where they left
+ * off also when a page ends inside the uncategorized ones.
+ */
+@DataJpaTest
+@ActiveProfiles("jpa-test")
+@Import({ProductService.class, ProductCache.class, ProductMapper.class})
+class ProductCategoryPageTest {
+
+    @Autowired
+    private TestEntityManager em;
+    @Autowired
+    private ProductService productService;
+
+    private final List<Product> products = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        String[] categories = {null, "Books", null, "Garden", null, "Books", null};
+        for (int i = 0; i < 14; i++) {
+            products.add(em.persist(Product.builder()
+                    .name("Product " + i)
+                    .price(BigDecimal.valueOf(i % 3))
+                    .stockQuantity(1)
+                    .category(categories[i % categories.length])
+                    .build()));
+        }
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    void pagesCoverUncategorizedProducts() {
+        List<Long> seen = new ArrayList<>();
+        String cursor = null;
+        do {
+            ProductPageResponseDto page = productService.getProductPage(cursor, 3, ProductSort.CATEGORY);
+            page.getItems().stream().map(ProductResponseDto::getId).forEach(seen::add);
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        List<Long> expected = products.stream()
+                .sorted(Comparator.comparing((Product p) -> p.getCategory() == null ? "" : p.getCategory())
+                        .thenComparing(Product::getPrice)
+                        .thenComparing(Product::getId))
+                .map(Product::getId)
+                .toList();
+        assertEquals(expected, seen);
+    }
+
+    @Test
+    void cursorAfterUncategorizedProductRoundTrips() {
+        Product uncategorized = products.get(0);
+        ProductCursor cursor = ProductCursor.after(ProductSort.CATEGORY, uncategorized);
+
+        ProductCursor decoded = ProductCursor.decode(cursor.encode(), ProductSort.CATEGORY);
+
+        assertEquals("", decoded.category());
+        assertEquals(uncategorized.getId(), decoded.id());
+        assertEquals(0, uncategorized.getPrice().compareTo(decoded.price()));
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.onlineshop.Service;
+
+import com.example.onlineshop.Entity.Product;
+import com.example.onlineshop.Repository.ProductRepository;
+import com.example.onlineshop.dto.PriceBucketDto;
+import com.example.onlineshop.dto.ProductFacetsResponseDto;
+import com.example.onlineshop.event.ProductChangedEvent;
+import com.example.onlineshop.event.ProductSnapshot;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Facet counts follow product events, a reconcile does not count a write twice
+ * when its event arrives after the GROUP BY already saw it, and products
+ * without a category stay apart from a category named like the bucket.
+ */
+@DataJpaTest
+@ActiveProfiles("jpa-test")
+class ProductFacetServiceTest {
+
+    private static final BigDecimal[] BOUNDS = {BigDecimal.TEN, BigDecimal.valueOf(100)};
+
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private ProductRepository repository;
+    private ProductFacetService facets;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(ProductRepository.class, delegatesTo(productRepository));
+        facets = new ProductFacetService(repository, transactionManager, BOUNDS);
+    }
+
+    @Test
+    void eventsMoveProductsBetweenBuckets() {
+        ProductSnapshot cheap = snapshot(1L, "Books", "5");
+        ProductSnapshot dear = snapshot(1L, "Toys", "150");
+
+        facets.onProductChanged(new ProductChangedEvent(1L, null, cheap));
+        facets.onProductChanged(new ProductChangedEvent(2L, null, snapshot(2L, "Books", "50")));
+        assertEquals(Map.of("Books", 2L), facets.getFacets(null).getCategories());
+        assertEquals(List.of(1L, 1L, 0L), histogram(facets.getFacets(null)));
+
+        facets.onProductChanged(new ProductChangedEvent(1L, cheap, dear));
+        ProductFacetsResponseDto all = facets.getFacets(null);
+        assertEquals(Map.of("Books", 1L, "Toys", 1L), all.getCategories());
+        assertEquals(2, all.getTotal());
+        assertEquals(List.of(0L, 1L, 1L), histogram(all));
+        assertEquals(List.of(0L, 0L, 1L), histogram(facets.getFacets("Toys")));
+
+        facets.onProductChanged(new ProductChangedEvent(1L, dear, null));
+        assertEquals(Map.of("Books", 1L), facets.getFacets(null).getCategories());
+        assertEquals(1, facets.getFacets(null).getTotal());
+    }
+
+    @Test
+    void uncategorizedProductsDoNotCollideWithACategory() {
+        facets.onProductChanged(new ProductChangedEvent(1L, null, snapshot(1L, null, "5")));
+        facets.onProductChanged(new ProductChangedEvent(2L, null, snapshot(2L, "uncategorized", "5")));
+
+        ProductFacetsResponseDto all = facets.getFacets(null);
+        assertEquals(Map.of("uncategorized", 1L), all.getCategories());
+        assertEquals(1, all.getUncategorized());
+        assertEquals(2, all.getTotal());
+        assertEquals(List.of(1L, 0L, 0L), histogram(facets.getFacets("uncategorized")));
+
+        save(null, "50");
+        save("uncategorized", "50");
+        save("uncategorized", "500");
+        facets.reconcile();
+
+        all = facets.getFacets(null);
+        assertEquals(Map.of("uncategorized", 2L), all.getCategories());
+        assertEquals(1, all.getUncategorized());
+        assertEquals(3, all.getTotal());
+    }
+
+    @Test
+    void reconcileReplacesDriftedCounts() {
+        save("Books", "5");
+        save("Books", "50");
+        // an event for a product that was never written
+        facets.onProductChanged(new ProductChangedEvent(99L, null, snapshot(99L, "Ghosts", "5")));
+
+        facets.reconcile();
+
+        ProductFacetsResponseDto all = facets.getFacets(null);
+        assertEquals(Map.of("Books", 2L), all.getCategories());
+        assertEquals(List.of(1L, 1L, 0L), histogram(all));
+    }
+
+    @Test
+    void reconcileCountsLateEventsOnce() {
+        Product created = save("Books", "5");
+        Product moved = save("Books", "5");
+        Product renamed = save("Games", "5");
+        // events that reach the listener while the GROUP BY runs: the create and
+        // the rename committed before it read the table, the move after
+        doAnswer(invocation -> {
+            facets.onProductChanged(new ProductChangedEvent(created.getId(), null, snapshot(created)));
+            facets.onProductChanged(new ProductChangedEvent(moved.getId(), snapshot(moved),
+                    snapshot(moved.getId(), "Toys", "150")));
+            facets.onProductChanged(new ProductChangedEvent(renamed.getId(),
+                    snapshot(renamed.getId(), "Puzzles", "5"), snapshot(renamed)));
+            return productRepository.countByCategoryAndPrice();
+        }).when(repository).countByCategoryAndPrice();
+
+        facets.reconcile();
+
+        ProductFacetsResponseDto all = facets.getFacets(null);
+        assertEquals(Map.of("Books", 1L, "Games", 1L, "Toys", 1L), all.getCategories());
+        assertEquals(3, all.getTotal());
+        assertEquals(List.of(2L, 0L, 1L), histogram(all));
+    }
+
+    private Product save(String category, String price) {
+        return productRepository.saveAndFlush(Product.builder()
+                .name("Product")
+                .category(category)
+                .price(new BigDecimal(price))
+                .stockQuantity(1)
+                .build());
+    }
+
+    private static ProductSnapshot snapshot(Product product) {
+        return new ProductSnapshot(product.getId(), product.getName(), null, product.getCategory(),
+                product.getPrice(), product.getStockQuantity());
+    }
+
+    private static ProductSnapshot snapshot(Long id, String category, String price) {
+        return new ProductSnapshot(id, "Product " + id, null, category, new BigDecimal(price), 1);
+    }
+
+    private static List<Long> histogram(ProductFacetsResponseDto facets) {
+        return facets.getPriceHistogram().stream().map(PriceBucketDto::getCount).toList();
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.onlineshop.Service;
+
+import com.example.onlineshop.Repository.ProductRepository;
+import com.example.onlineshop.Service.ProductImportService.ImportFormat;
+import com.example.onlineshop.dto.BulkImportResultDto;
+import com.example.onlineshop.dto.BulkImportResultDto.RowError;
+import com.example.onlineshop.event.ProductsImportedEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Imports against the database, batches committing on their own: a row the
+ * database rejects costs only that row, reported with its own line number.
+ */
+@CommittingServiceSliceTest
+class ProductImportServiceTest {
+
+    @Autowired
+    private ShopFixture fixture;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private ProductRepository productRepository;
+
+    private final List<Object> published = new ArrayList<>();
+    private ProductImportService importService;
+
+    @BeforeEach
+    void setUp() {
+        importService = new ProductImportService(jdbcTemplate, transactionTemplate, fixture.sequenceBlocks(),
+                Validation.buildDefaultValidatorFactory().getValidator(), new ObjectMapper(), published::add, 4, 100);
+    }
+
+    @AfterEach
+    void tearDown() {
+        fixture.deleteAll();
+    }
+
+    @Test
+    void databaseRejectionCostsOnlyTheBadRows() {
+        StringBuilder body = new StringBuilder();
+        for (int line = 1; line <= 10; line++) {
+            // lines 3 and 6 pass validation but are too long for products.name
+            String name = line == 3 || line == 6 ? "x".repeat(300) : "Product " + line;
+            body.append("{\"name\":\"").append(name)
+                    .append("\",\"price\":9.99,\"stockQuantity\":5,\"category\":\"Misc\"}\n");
+        }
+
+        BulkImportResultDto result = importService.importProducts(
+                new ByteArrayInputStream(body.toString().getBytes(StandardCharsets.UTF_8)), ImportFormat.NDJSON);
+
+        assertEquals(10, result.getReceived());
+        assertEquals(8, result.getImported());
+        assertEquals(2, result.getFailed());
+        assertEquals(List.of(3L, 6L), result.getErrors().stream().map(RowError::getLine).toList());
+        assertTrue(result.getErrors().get(0).getMessage().startsWith("Rejected by the database"));
+        assertEquals(8, productRepository.count());
+        assertEquals(List.of(new ProductsImportedEvent(8)), published);
+    }
+
+    @Test
+    void validationAndDatabaseErrorsKeepTheirLines() {
+        String body = """
+                name,price,stock_quantity,category
+                Lamp,12.50,3,Home
+                ,4.00,1,Home
+                %s,1.00,1,Home
+                Chair,40.00,2,Home
+                """.formatted("y".repeat(300));
+
+        BulkImportResultDto result = importService.importProducts(
+                new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), ImportFormat.CSV);
+
+        assertEquals(2, result.getImported());
+        assertEquals(List.of(3L, 4L), result.getErrors().stream().map(RowError::getLine).toList());
+    }
+}
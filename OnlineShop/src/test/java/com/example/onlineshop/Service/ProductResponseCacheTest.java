@@ -0,0 +1,96 @@
+package com.example.onlineshop.Service;
+
+import com.example.onlineshop.dto.ProductResponseDto;
+import com.example.onlineshop.event.ProductChangedEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductResponseCacheTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private ProductResponseCache cache(String maxSize) {
+        return new ProductResponseCache(objectMapper, DataSize.parse(maxSize), DataSize.parse("1KB"));
+    }
+
+    private static ProductResponseDto product(long id) {
+        return ProductResponseDto.builder().id(id).name("Product " + id).price(BigDecimal.TEN).category("Books").build();
+    }
+
+    @Test
+    void rendersOncePerTag() {
+        ProductResponseCache cache = cache("1MB");
+        AtomicInteger renders = new AtomicInteger();
+
+        byte[] first = cache.get("product:1", "0", () -> { renders.incrementAndGet(); return product(1); }).json();
+        byte[] second = cache.get("product:1", "0", () -> { renders.incrementAndGet(); return product(1); }).json();
+        assertSame(first, second);
+        assertEquals(1, renders.get());
+
+        cache.get("product:1", "1", () -> { renders.incrementAndGet(); return product(1); });
+        assertEquals(2, renders.get());
+        assertEquals(1, cache.hitCount());
+    }
+
+    @Test
+    void productWriteDropsTheProductAndAllPages() {
+        ProductResponseCache cache = cache("1MB");
+        cache.get("product:1", "0", () -> product(1));
+        cache.get("product:2", "0", () -> product(2));
+        cache.get("products:ID:null:null", "c1", () -> List.of(product(1), product(2)));
+
+        cache.onProductChanged(new ProductChangedEvent(1L, null, null));
+
+        assertEquals(1, cache.size());
+        assertEquals(cache.get("product:2", "0", () -> product(2)).json().length, cache.storedBytes());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedBeyondTheByteLimit() {
+        ProductResponseCache cache = cache("200B");
+        for (long id = 1; id <= 10; id++) {
+            long productId = id;
+            cache.get("product:" + id, "0", () -> product(productId));
+        }
+        assertTrue(cache.storedBytes() <= 200);
+        assertTrue(cache.size() < 10);
+    }
+
+    @Test
+    void gzipsOnlyLargeBodies() throws IOException {
+        ProductResponseCache cache = cache("1MB");
+        assertNull(cache.get("product:1", "0", () -> product(1)).gzip());
+
+        List<ProductResponseDto> page = java.util.stream.LongStream.rangeClosed(1, 50)
+                .mapToObj(ProductResponseCacheTest::product)
+                .toList();
+        ProductResponseCache.Body body = cache.get("products:ID:50:null", "c1", () -> page);
+        byte[] gzip = body.gzip();
+        assertNotNull(gzip);
+        assertTrue(gzip.length < body.json().length);
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzip))) {
+            assertArrayEquals(body.json(), in.readAllBytes());
+        }
+        assertEquals(body.json().length + gzip.length + cache.get("product:1", "0", () -> product(1)).json().length,
+                cache.storedBytes());
+    }
+
+    @Test
+    void parsesAcceptEncoding() {
+        assertTrue(ProductResponseCache.acceptsGzip("gzip, deflate, br"));
+        assertTrue(ProductResponseCache.acceptsGzip("br;q=1.0, gzip;q=0.8"));
+        assertFalse(ProductResponseCache.acceptsGzip("gzip;q=0"));
+        assertFalse(ProductResponseCache.acceptsGzip("identity"));
+        assertFalse(ProductResponseCache.acceptsGzip(null));
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.onlineshop.Service;
+
+import com.example.onlineshop.Util.CartMapper;
+import com.example.onlineshop.Util.OrderMapper;
+import com.example.onlineshop.Util.ProductMapper;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Import;
+
+/**
+ * The cart, order and product services on top of the JPA slice, plus the
+ * shared test data. Tests that need a bean outside this list import it next
+ * to their slice annotation.
+ */
+@TestConfiguration(proxyBeanMethods = false)
+@Import({CartService.class, CartUpdateRunner.class, OrderService.class, StockReservations.class,
+        IdempotencyKeys.class, OrderOutbox.class, ProductService.class, ProductCache.class,
+        JacksonAutoConfiguration.class, CartMapper.class, OrderMapper.class, ProductMapper.class,
+        ShopFixture.class})
+public class ServiceSliceConfiguration {
+}
@@ -0,0 +1,23 @@
+package com.example.onlineshop.Service;
+
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * A JPA slice on H2 with the services from ServiceSliceConfiguration. Each
+ * test runs in a transaction that is rolled back; see CommittingServiceSliceTest
+ * for tests whose calls must commit.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@DataJpaTest
+@ActiveProfiles("jpa-test")
+@Import(ServiceSliceConfiguration.class)
+public @interface ServiceSliceTest {
+}
@@ -0,0 +1,126 @@
+package com.example.onlineshop.Service;
+
+import com.example.onlineshop.Entity.Cart;
+import com.example.onlineshop.Entity.CartItem;
+import com.example.onlineshop.Entity.Customer;
+import com.example.onlineshop.Entity.Product;
+import com.example.onlineshop.Entity.User;
+import com.example.onlineshop.Repository.CartRepository;
+import com.example.onlineshop.Repository.CustomerRepository;
+import com.example.onlineshop.Repository.OrderRepository;
+import com.example.onlineshop.Repository.ProductRepository;
+import com.example.onlineshop.Repository.UserRepository;
+import com.example.onlineshop.Util.SequenceBlocks;
+import org.springframework.boot.test.context.TestComponent;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Test data for the service slices. Every method joins the test's
+ * transaction when there is one and commits on its own otherwise.
+ */
+@TestComponent
+public class ShopFixture {
+
+    private final UserRepository userRepository;
+    private final CustomerRepository customerRepository;
+    private final ProductRepository productRepository;
+    private final CartRepository cartRepository;
+    private final OrderRepository orderRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final AtomicLong ids = new AtomicLong(1_000_000);
+
+    public ShopFixture(UserRepository userRepository, CustomerRepository customerRepository,
+                       ProductRepository productRepository, CartRepository cartRepository,
+                       OrderRepository orderRepository, JdbcTemplate jdbcTemplate,
+                       TransactionTemplate transactionTemplate) {
+        this.userRepository = userRepository;
+        this.customerRepository = customerRepository;
+        this.productRepository = productRepository;
+        this.cartRepository = cartRepository;
+        this.orderRepository = orderRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    public Customer customer() {
+        return customer("buyer");
+    }
+
+    public Customer customer(String username) {
+        return transactionTemplate.execute(status -> {
+            User user = userRepository.save(User.builder()
+                    .username(username)
+                    .email(username + "@example.com")
+                    .password("x")
+                    .build());
+            return customerRepository.save(Customer.builder().firstName("Ana").lastName("Pop").user(user).build());
+        });
+    }
+
+    public Product product(String name, int stock) {
+        return product(name, BigDecimal.TEN, stock);
+    }
+
+    public Product product(String name, BigDecimal price, int stock) {
+        return transactionTemplate.execute(status -> productRepository.save(Product.builder()
+                .name(name)
+                .price(price)
+                .stockQuantity(stock)
+                .category("Misc")
+                .build()));
+    }
+
+    public Cart cart(Customer customer) {
+        return cart(customer, Map.of());
+    }
+
+    /** A cart holding the given quantity of each product id. */
+    public Cart cart(Customer customer, Map<Long, Integer> quantities) {
+        return transactionTemplate.execute(status -> {
+            Cart cart = Cart.builder()
+                    .customer(customer)
+                    .createdAt(LocalDateTime.now())
+                    .updatedAt(LocalDateTime.now())
+                    .build();
+            quantities.forEach((productId, quantity) -> cart.getItems().put(productId, CartItem.builder()
+                    .cart(cart)
+                    .product(productRepository.getReferenceById(productId))
+                    .quantity(quantity)
+                    .build()));
+            return cartRepository.save(cart);
+        });
+    }
+
+    /** H2 has no generate_series, so ids come from a plain counter instead. */
+    public SequenceBlocks sequenceBlocks() {
+        return new SequenceBlocks(jdbcTemplate) {
+            @Override
+            public long[] next(String sequence, int count) {
+                long[] block = new long[count];
+                for (int i = 0; i < count; i++) {
+                    block[i] = ids.getAndIncrement();
+                }
+                return block;
+            }
+        };
+    }
+
+    /** Empties every table the service slices write, children first. */
+    public void deleteAll() {
+        jdbcTemplate.update("DELETE FROM hot_stock_allotments");
+        jdbcTemplate.update("DELETE FROM idempotency_keys");
+        jdbcTemplate.update("DELETE FROM order_outbox");
+        cartRepository.deleteAll();
+        orderRepository.deleteAll();
+        customerRepository.deleteAll();
+        userRepository.deleteAll();
+        productRepository.deleteAll();
+    }
+}
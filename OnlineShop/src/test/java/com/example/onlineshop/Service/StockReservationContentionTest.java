@@ -0,0 +1,157 @@
+package com.example.onlineshop.Service;
+
+import com.example.onlineshop.Entity.*;
+import com.example.onlineshop.Repository.*;
+import com.example.onlineshop.dto.OrderItemRequestDto;
+import com.example.onlineshop.dto.OrderRequestDto;
+import com.example.onlineshop.exception.InsufficientStockException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Many buyers ordering the same product at once, with more attempts than
+ * stock. Exactly the stock sells, the rest get InsufficientStockException,
+ * and the stock never goes below zero.
+ */
+@CommittingServiceSliceTest
+class StockReservationContentionTest {
+
+    private static final int STOCK = 50;
+    private static final int THREADS = 8;
+    private static final int ORDERS_PER_THREAD = 10;
+
+    @Autowired
+    private ShopFixture fixture;
+    @Autowired
+    private OrderService orderService;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private OrderRepository orderRepository;
+    @Autowired
+    private ProductRepository productRepository;
+
+    private Long customerId;
+    private Long hotId;
+    private Long otherId;
+
+    @BeforeEach
+    void setUp() {
+        customerId = fixture.customer().getId();
+        hotId = fixture.product("Hot", STOCK).getId();
+        otherId = fixture.product("Other", 1_000).getId();
+    }
+
+    @AfterEach
+    void tearDown() {
+        fixture.deleteAll();
+    }
+
+    @Test
+    void hotProductNeverOversells() throws Exception {
+        AtomicInteger sold = new AtomicInteger();
+        AtomicInteger refused = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < ORDERS_PER_THREAD; i++) {
+                        try {
+                            orderService.createOrder(order(hotId));
+                            sold.incrementAndGet();
+                        } catch (InsufficientStockException e) {
+                            assertEquals(List.of(hotId), e.getProductIds());
+                            refused.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> result : results) {
+                result.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        int attempts = THREADS * ORDERS_PER_THREAD;
+        assertEquals(STOCK, sold.get());
+        assertEquals(attempts - STOCK, refused.get());
+        assertEquals(0, stockOf(hotId));
+        assertEquals(STOCK, orderRepository.count());
+    }
+
+    @Test
+    void shortLineRollsBackTheWholeOrder() {
+        transactionTemplate.executeWithoutResult(status -> productRepository.findById(hotId).orElseThrow().setStockQuantity(1));
+
+        InsufficientStockException error = assertThrows(InsufficientStockException.class,
+                () -> orderService.createOrder(order(otherId, hotId, hotId)));
+
+        assertEquals(List.of(hotId), error.getProductIds());
+        assertEquals(1_000, stockOf(otherId));
+        assertEquals(1, stockOf(hotId));
+        assertEquals(0, orderRepository.count());
+    }
+
+    @Test
+    void saleKeepsTheVersionAndAnEditKeepsTheSale() {
+        Product before = productRepository.findById(hotId).orElseThrow();
+
+        orderService.createOrder(order(hotId));
+
+        // stock is in no response, cached bodies and ETags stay valid
+        Product after = productRepository.findById(hotId).orElseThrow();
+        assertEquals(before.getVersion(), after.getVersion());
+        assertEquals(before.getUpdatedAt(), after.getUpdatedAt());
+        assertEquals(STOCK - 1, after.getStockQuantity());
+
+        // an edit that loaded the product before another sale does not put the stock back
+        transactionTemplate.executeWithoutResult(status -> {
+            Product edited = productRepository.findById(hotId).orElseThrow();
+            CompletableFuture.runAsync(() -> orderService.createOrder(order(hotId))).join();
+            edited.setName("Renamed");
+        });
+        Product renamed = productRepository.findById(hotId).orElseThrow();
+        assertEquals("Renamed", renamed.getName());
+        assertEquals(STOCK - 2, renamed.getStockQuantity());
+        assertEquals(before.getVersion() + 1, renamed.getVersion());
+    }
+
+    private OrderRequestDto order(Long... productIds) {
+        OrderRequestDto request = new OrderRequestDto();
+        request.setCustomerId(customerId);
+        List<OrderItemRequestDto> items = new ArrayList<>();
+        for (Long productId : productIds) {
+            OrderItemRequestDto item = new OrderItemRequestDto();
+            item.setProductId(productId);
+            item.setQuantity(1);
+            items.add(item);
+        }
+        request.setItems(items);
+        return request;
+    }
+
+    private int stockOf(Long productId) {
+        return productRepository.findById(productId).orElseThrow().getStockQuantity();
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.onlineshop.Service;
+
+import com.example.onlineshop.exception.InsufficientStockException;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class StockReservationsTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final StockReservations reservations = new StockReservations(jdbcTemplate, Optional.empty());
+
+    @Test
+    void reservesWhenEveryLineUpdatesItsRow() {
+        counts(1, 1);
+
+        reservations.reserve(Map.of(2L, 1, 1L, 3));
+
+        // ascending product ids, concurrent orders lock shared rows in the same order
+        verify(jdbcTemplate).batchUpdate(anyString(), argThat((List<Object[]> rows) ->
+                rows.size() == 2 && rows.get(0)[1].equals(1L) && rows.get(1)[1].equals(2L)));
+    }
+
+    @Test
+    void linesThatUpdateNoRowAreShort() {
+        counts(1, 0, 0);
+
+        InsufficientStockException e = assertThrows(InsufficientStockException.class,
+                () -> reservations.reserve(Map.of(1L, 1, 2L, 1, 3L, 1)));
+
+        assertEquals(List.of(2L, 3L), e.getProductIds());
+    }
+
+    @Test
+    void missingUpdateCountFailsInsteadOfPassingAsReserved() {
+        counts(1, Statement.SUCCESS_NO_INFO);
+
+        assertThrows(IllegalStateException.class, () -> reservations.reserve(Map.of(1L, 1, 2L, 1)));
+    }
+
+    private void counts(int... updated) {
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenReturn(updated);
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.onlineshop.Util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvLineParserTest {
+
+    @Test
+    void splitsPlainAndQuotedFields() {
+        assertEquals(List.of("Laptop", "1299.99", "", "10", "Electronics"),
+                CsvLineParser.parse("Laptop,1299.99,,10,Electronics"));
+        assertEquals(List.of("Desk, oak", "He said \"sturdy\"", "3"),
+                CsvLineParser.parse("\"Desk, oak\",\"He said \"\"sturdy\"\"\",3"));
+    }
+
+    @Test
+    void rejectsUnterminatedQuote() {
+        assertThrows(IllegalArgumentException.class, () -> CsvLineParser.parse("\"Desk,3"));
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.onlineshop.Util;
+
+import com.example.onlineshop.dto.ProductSuggestionDto;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductAutocompleteIndexTest {
+
+    private static List<Long> ids(List<ProductSuggestionDto> suggestions) {
+        return suggestions.stream().map(ProductSuggestionDto::getId).toList();
+    }
+
+    private static ProductAutocompleteIndex index() {
+        Map<Long, String> names = new LinkedHashMap<>();
+        names.put(1L, "Gaming Laptop");
+        names.put(2L, "Gaming Mouse");
+        names.put(3L, "Laptop Stand");
+        names.put(4L, "Garden Hose");
+        return ProductAutocompleteIndex.build(names, Map.of(2L, 50L, 3L, 20L, 1L, 5L));
+    }
+
+    @Test
+    void matchesWordStartsByPopularity() {
+        ProductAutocompleteIndex index = index();
+
+        assertEquals(List.of(2L, 1L, 4L), ids(index.suggest("ga", 10)));
+        assertEquals(List.of(3L, 1L), ids(index.suggest("LAP", 10)));
+        assertEquals(List.of(1L), ids(index.suggest("gaming lap", 10)));
+        assertEquals(List.of(2L), ids(index.suggest("ga", 1)));
+        assertTrue(index.suggest("xyz", 10).isEmpty());
+    }
+
+    @Test
+    void appliesRenamesAndDeletesFromDelta() {
+        ProductAutocompleteIndex index = index();
+        index.put(2L, "Wireless Mouse");
+        index.remove(4L);
+        index.put(5L, "Gamepad");
+
+        assertEquals(List.of(1L, 5L), ids(index.suggest("ga", 10)));
+        assertEquals(List.of(2L), ids(index.suggest("wire", 10)));
+
+        ProductAutocompleteIndex rebuilt = ProductAutocompleteIndex.build(index.liveProducts(), Map.of(5L, 1L));
+        assertEquals(List.of(5L, 1L), ids(rebuilt.suggest("ga", 10)));
+        assertEquals(0, rebuilt.deltaSize());
+        assertTrue(rebuilt.estimatedMemoryBytes() > 0);
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.onlineshop.Util;
+
+import com.example.onlineshop.dto.ProductResponseDto;
+import com.example.onlineshop.event.ProductSnapshot;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductSearchIndexTest {
+
+    private final ProductSearchIndex index = new ProductSearchIndex();
+
+    private void put(long id, String name, String description, String category) {
+        ProductSnapshot product = new ProductSnapshot(id, name, description, category, BigDecimal.ONE, 1);
+        index.put(product, new ProductResponseDto(id, name, BigDecimal.ONE, category, null, null));
+    }
+
+    private List<Long> ids(List<ProductResponseDto> results) {
+        return results.stream().map(ProductResponseDto::getId).toList();
+    }
+
+    @Test
+    void ranksNameMatchesAboveDescriptionMatches() {
+        put(1, "Office chair", "Comfortable seat for a gaming laptop desk", "Furniture");
+        put(2, "Gaming laptop", "RTX GPU", "Electronics");
+        put(3, "Coffee mug", "Ceramic", "Kitchen");
+
+        assertEquals(List.of(2L, 1L), ids(index.search("Gaming LAPTOP", 10)));
+        assertEquals(List.of(3L), ids(index.search("kitchen", 10)));
+    }
+
+    @Test
+    void updatesAndDeletesAreVisible() {
+        put(1, "Gaming laptop", null, "Electronics");
+        put(1, "Desk lamp", null, "Lighting");
+        put(2, "Laptop stand", null, "Accessories");
+        index.remove(2L);
+
+        assertTrue(index.search("laptop", 10).isEmpty());
+        assertEquals(List.of(1L), ids(index.search("lamp", 10)));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void compactionKeepsResults() {
+        for (long id = 1; id <= 3000; id++) {
+            put(id, "Item " + id, id % 2 == 0 ? "even" : "odd", "Misc");
+        }
+        for (long id = 1; id <= 2000; id++) {
+            index.remove(id);
+        }
+
+        assertEquals(1000, index.size());
+        assertEquals(List.of(2001L), ids(index.search("2001", 10)));
+        assertEquals(500, index.search("even", 1000).size());
+    }
+}